@@ -0,0 +1,698 @@
+package com.loyayz.simple.processor;
+
+import com.loyayz.simple.helper.ModelField;
+import com.loyayz.simple.helper.ModelIndex;
+import com.loyayz.simple.helper.Utils;
+import com.loyayz.simple.mybatis.MybatisScripts;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Inherited;
+import java.util.*;
+
+/**
+ * 编译期生成模型信息
+ * <p>
+ * 为 @ModelScan 条件匹配到的模型类生成 {@link com.loyayz.simple.helper.ModelDefinition} 的实现（模型类名_SimpleModel），
+ * 包含字段映射、属性读写函数和固定的 SQL 脚本，并在 {@link ModelIndex#LOCATION} 生成模型索引。
+ * 运行时存在索引时，不再扫描类路径和反射解析模型类。
+ * <p>
+ * 只处理同一次编译中的 @ModelScan 和模型类，解析规则与 ModelInfo 保持一致。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+@SupportedAnnotationTypes("*")
+public class ModelProcessor extends AbstractProcessor {
+    static final String DEFINITION_SUFFIX = "_SimpleModel";
+    private static final String MODEL_SCAN = "com.loyayz.simple.annotation.ModelScan";
+    private static final String MODEL_SCANS = "com.loyayz.simple.annotation.ModelScans";
+    private static final String ID_STRATEGY = "com.loyayz.simple.annotation.IdStrategy";
+    private static final String JPA_TABLE = "javax.persistence.Table";
+    private static final String JPA_COLUMN = "javax.persistence.Column";
+    private static final String JPA_ID = "javax.persistence.Id";
+    private static final String JPA_TRANSIENT = "javax.persistence.Transient";
+    private static final String DEFAULT_ID_NAME = "id";
+    private static final String CONFIG_LOCATION_DELIMITERS = ",; \t\n";
+
+    private final List<ScanCriteria> criteria = new ArrayList<>();
+    /**
+     * 本次编译中的所有类
+     */
+    private final Set<String> candidates = new LinkedHashSet<>();
+    /**
+     * 模型类名 -> 模型信息类名
+     */
+    private final Map<String, String> generated = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            this.writeIndex();
+            return false;
+        }
+        this.collectCriteria(roundEnv);
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            this.collectCandidates(type);
+        }
+        Elements elements = processingEnv.getElementUtils();
+        for (String candidate : this.candidates) {
+            if (this.generated.containsKey(candidate)) {
+                continue;
+            }
+            TypeElement type = elements.getTypeElement(candidate);
+            if (type != null && this.isModel(type)) {
+                this.generate(type);
+            }
+        }
+        return false;
+    }
+
+    private void collectCriteria(RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        TypeElement modelScan = elements.getTypeElement(MODEL_SCAN);
+        TypeElement modelScans = elements.getTypeElement(MODEL_SCANS);
+        if (modelScan == null) {
+            return;
+        }
+        Set<Element> annotated = new LinkedHashSet<>(roundEnv.getElementsAnnotatedWith(modelScan));
+        if (modelScans != null) {
+            annotated.addAll(roundEnv.getElementsAnnotatedWith(modelScans));
+        }
+        for (Element element : annotated) {
+            String defaultPackage = elements.getPackageOf(element).getQualifiedName().toString();
+            for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+                String name = annotationName(mirror);
+                if (MODEL_SCAN.equals(name)) {
+                    this.criteria.add(this.toCriteria(mirror, defaultPackage));
+                } else if (MODEL_SCANS.equals(name)) {
+                    for (AnnotationValue value : listValue(mirror, "value")) {
+                        this.criteria.add(this.toCriteria((AnnotationMirror) value.getValue(), defaultPackage));
+                    }
+                }
+            }
+        }
+    }
+
+    private ScanCriteria toCriteria(AnnotationMirror mirror, String defaultPackage) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        List<String> basePackages = new ArrayList<>();
+        for (String attr : new String[]{"value", "basePackages"}) {
+            for (AnnotationValue value : listValue(values, attr)) {
+                StringTokenizer tokenizer = new StringTokenizer(String.valueOf(value.getValue()), CONFIG_LOCATION_DELIMITERS);
+                while (tokenizer.hasMoreTokens()) {
+                    basePackages.add(tokenizer.nextToken().trim());
+                }
+            }
+        }
+        if (basePackages.isEmpty()) {
+            basePackages.add(defaultPackage);
+        }
+        TypeMirror superClass = (TypeMirror) value(values, "superClass").getValue();
+        List<TypeMirror> annotationClasses = new ArrayList<>();
+        for (AnnotationValue value : listValue(values, "annotationClass")) {
+            annotationClasses.add((TypeMirror) value.getValue());
+        }
+        return new ScanCriteria(basePackages, superClass, annotationClasses);
+    }
+
+    private void collectCandidates(TypeElement type) {
+        this.candidates.add(type.getQualifiedName().toString());
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            this.collectCandidates(nested);
+        }
+    }
+
+    /**
+     * 与 ClassPathScanningCandidateComponentProvider 一致：
+     * 独立（顶层或静态内部类）的非抽象类，且继承 superClass 或有 annotationClass 注解
+     */
+    private boolean isModel(TypeElement type) {
+        Set<Modifier> modifiers = type.getModifiers();
+        if (type.getKind() != ElementKind.CLASS || modifiers.contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+                && !(type.getNestingKind() == NestingKind.MEMBER && modifiers.contains(Modifier.STATIC))) {
+            return false;
+        }
+        Types types = processingEnv.getTypeUtils();
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        for (ScanCriteria scan : this.criteria) {
+            if (!scan.includes(packageName)) {
+                continue;
+            }
+            if (types.isAssignable(types.erasure(type.asType()), types.erasure(scan.superClass))) {
+                return true;
+            }
+            for (TypeMirror annotationClass : scan.annotationClasses) {
+                if (this.hasAnnotation(type, annotationClass)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasAnnotation(TypeElement type, TypeMirror annotationClass) {
+        Types types = processingEnv.getTypeUtils();
+        if (this.hasAnnotation(type, annotationClass, new HashSet<>())) {
+            return true;
+        }
+        boolean inherited = types.asElement(annotationClass).getAnnotation(Inherited.class) != null;
+        TypeMirror superType = type.getSuperclass();
+        while (inherited && superType.getKind() == TypeKind.DECLARED) {
+            TypeElement superElement = (TypeElement) types.asElement(superType);
+            if (this.hasAnnotation(superElement, annotationClass, new HashSet<>())) {
+                return true;
+            }
+            superType = superElement.getSuperclass();
+        }
+        return false;
+    }
+
+    /**
+     * 直接注解或元注解
+     */
+    private boolean hasAnnotation(Element element, TypeMirror annotationClass, Set<String> visited) {
+        Types types = processingEnv.getTypeUtils();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            DeclaredType annotationType = mirror.getAnnotationType();
+            if (types.isSameType(annotationType, annotationClass)) {
+                return true;
+            }
+            String name = annotationName(mirror);
+            if (!name.startsWith("java.lang.annotation.") && visited.add(name)
+                    && this.hasAnnotation(annotationType.asElement(), annotationClass, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        Elements elements = processingEnv.getElementUtils();
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String modelType = type.getQualifiedName().toString();
+        String simpleName = modelType.substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                .replace('.', '_') + DEFINITION_SUFFIX;
+        String definitionName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        List<VariableElement> fields = this.fields(type);
+        VariableElement idField = null;
+        for (VariableElement field : fields) {
+            if (this.annotation(field, JPA_ID) != null) {
+                idField = field;
+                break;
+            }
+            if (DEFAULT_ID_NAME.equals(field.getSimpleName().toString())) {
+                idField = field;
+            }
+        }
+        AnnotationMirror idStrategy = idField == null ? null : this.annotation(idField, ID_STRATEGY);
+        boolean autoId = idStrategy != null
+                && String.valueOf(value(this.valuesWithDefaults(idStrategy), "type").getValue()).equals("AUTO");
+
+        List<ModelField> scriptFields = new ArrayList<>();
+        ModelField scriptIdField = null;
+        StringBuilder fieldsSource = new StringBuilder();
+        for (VariableElement field : fields) {
+            String property = field.getSimpleName().toString();
+            String column = Utils.camelToUnderline(property);
+            boolean insertable = true;
+            boolean updatable = true;
+            AnnotationMirror columnAnnotation = this.annotation(field, JPA_COLUMN);
+            if (columnAnnotation != null) {
+                Map<? extends ExecutableElement, ? extends AnnotationValue> values = this.valuesWithDefaults(columnAnnotation);
+                String name = String.valueOf(value(values, "name").getValue());
+                if (!name.trim().isEmpty()) {
+                    column = name;
+                }
+                insertable = (Boolean) value(values, "insertable").getValue();
+                updatable = (Boolean) value(values, "updatable").getValue();
+            }
+            if (field == idField) {
+                // 主键字段不可修改，自增主键不可新增
+                updatable = false;
+                insertable = insertable && !autoId;
+            }
+            ModelField scriptField = ModelField.of(null, property, this.scriptType(field.asType()), column,
+                    insertable, updatable, null, null);
+            scriptFields.add(scriptField);
+            if (field == idField) {
+                scriptIdField = scriptField;
+            }
+            fieldsSource.append(fieldsSource.length() == 0 ? "\n" : ",\n")
+                    .append("            com.loyayz.simple.helper.ModelField.of(").append(modelType).append(".class, ")
+                    .append(literal(property)).append(", ")
+                    .append(this.classLiteral(field.asType())).append(", ")
+                    .append(literal(column)).append(", ")
+                    .append(insertable).append(", ")
+                    .append(updatable).append(",\n                    ")
+                    .append(this.getter(type, field)).append(",\n                    ")
+                    .append(this.setter(type, field)).append(")");
+        }
+        Map<String, String> scripts = MybatisScripts.fixedScripts(this.modelName(type), scriptFields, scriptIdField);
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n * Generated by ").append(ModelProcessor.class.getName()).append(", do not edit.\n */\n")
+                .append("@SuppressWarnings(\"all\")\n")
+                .append("public final class ").append(simpleName)
+                .append(" implements com.loyayz.simple.helper.ModelDefinition {\n")
+                .append("    private static final java.util.List<com.loyayz.simple.helper.ModelField> FIELDS = java.util.Collections.unmodifiableList(java.util.Arrays.asList(")
+                .append(fieldsSource).append("\n    ));\n")
+                .append("    private static final java.util.Map<String, String> SCRIPTS;\n\n")
+                .append("    static {\n")
+                .append("        java.util.Map<String, String> scripts = new java.util.LinkedHashMap<>();\n");
+        for (Map.Entry<String, String> script : scripts.entrySet()) {
+            source.append("        scripts.put(").append(literal(script.getKey())).append(", ")
+                    .append(literal(script.getValue())).append(");\n");
+        }
+        source.append("        SCRIPTS = java.util.Collections.unmodifiableMap(scripts);\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public Class<?> modelClass() {\n")
+                .append("        return ").append(modelType).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public String modelName() {\n")
+                .append("        return ").append(literal(this.modelName(type))).append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public java.util.List<com.loyayz.simple.helper.ModelField> fields() {\n")
+                .append("        return FIELDS;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public String idProperty() {\n")
+                .append("        return ").append(idField == null ? "null" : literal(idField.getSimpleName().toString())).append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public ").append(ID_STRATEGY).append(" idStrategy() {\n")
+                .append("        return ").append(idStrategy == null ? "null" : this.annotationSource(idStrategy)).append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public java.util.Map<String, String> scripts() {\n")
+                .append("        return SCRIPTS;\n")
+                .append("    }\n\n")
+                .append("}\n");
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(definitionName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.toString());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "无法生成模型信息 " + definitionName + "：" + e.getMessage(), type);
+            return;
+        }
+        this.generated.put(elements.getBinaryName(type).toString(), definitionName);
+        this.generated.put(modelType, definitionName);
+    }
+
+    private void writeIndex() {
+        if (this.generated.isEmpty()) {
+            return;
+        }
+        Elements elements = processingEnv.getElementUtils();
+        Map<String, String> index = new TreeMap<>();
+        for (Map.Entry<String, String> entry : this.generated.entrySet()) {
+            TypeElement type = elements.getTypeElement(entry.getKey().replace('$', '.'));
+            String binaryName = type == null ? entry.getKey() : elements.getBinaryName(type).toString();
+            index.put(binaryName, entry.getValue());
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ModelIndex.LOCATION);
+            try (Writer writer = file.openWriter()) {
+                writer.write("# Generated by " + ModelProcessor.class.getName() + "\n");
+                // 本模块已处理的包，运行时所有模块都声明了的包不再扫描类路径
+                Set<String> packages = new TreeSet<>();
+                for (ScanCriteria criteria : this.criteria) {
+                    packages.addAll(criteria.basePackages);
+                }
+                for (String pkg : packages) {
+                    writer.write("@" + pkg + "\n");
+                }
+                for (Map.Entry<String, String> entry : index.entrySet()) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "无法生成模型索引：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 与 Utils.getFields 一致：子类属性优先，过滤 static、transient、@Transient
+     */
+    private List<VariableElement> fields(TypeElement type) {
+        Map<String, VariableElement> fields = new LinkedHashMap<>();
+        Types types = processingEnv.getTypeUtils();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals(Object.class.getName())) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                fields.putIfAbsent(field.getSimpleName().toString(), field);
+            }
+            TypeMirror superType = current.getSuperclass();
+            current = superType.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement(superType) : null;
+        }
+        List<VariableElement> result = new ArrayList<>();
+        for (VariableElement field : fields.values()) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                    || this.annotation(field, JPA_TRANSIENT) != null) {
+                continue;
+            }
+            result.add(field);
+        }
+        return result;
+    }
+
+    /**
+     * 与 ModelInfo.obtainModelName 一致
+     */
+    private String modelName(TypeElement type) {
+        String modelName = Utils.camelToUnderline(type.getSimpleName().toString());
+        AnnotationMirror table = this.annotation(type, JPA_TABLE);
+        if (table != null) {
+            Map<? extends ExecutableElement, ? extends AnnotationValue> values = this.valuesWithDefaults(table);
+            String name = String.valueOf(value(values, "name").getValue());
+            String schema = String.valueOf(value(values, "schema").getValue());
+            if (!name.trim().isEmpty()) {
+                modelName = name;
+            }
+            if (!schema.trim().isEmpty()) {
+                modelName = schema + "." + modelName;
+            }
+        }
+        return modelName;
+    }
+
+    /**
+     * 读函数：优先 public getter，其次可访问的属性，否则为 null（运行时反射生成）
+     */
+    private String getter(TypeElement type, VariableElement field) {
+        String modelType = type.getQualifiedName().toString();
+        String suffix = capitalize(field.getSimpleName().toString());
+        ExecutableElement method = this.findMethod(type, "get" + suffix, field.asType(), null);
+        if (method == null && field.asType().getKind() == TypeKind.BOOLEAN) {
+            method = this.findMethod(type, "is" + suffix, field.asType(), null);
+        }
+        if (method != null) {
+            return String.format("m -> ((%s) m).%s()", modelType, method.getSimpleName());
+        }
+        if (this.accessible(type, field)) {
+            return String.format("m -> ((%s) m).%s", modelType, field.getSimpleName());
+        }
+        return "null";
+    }
+
+    /**
+     * 写函数：优先 public setter，其次可访问的非 final 属性，否则为 null（运行时反射生成）
+     */
+    private String setter(TypeElement type, VariableElement field) {
+        String modelType = type.getQualifiedName().toString();
+        String cast = this.castType(field.asType());
+        String suffix = capitalize(field.getSimpleName().toString());
+        Types types = processingEnv.getTypeUtils();
+        ExecutableElement method = this.findMethod(type, "set" + suffix, types.getNoType(TypeKind.VOID), field.asType());
+        if (method != null) {
+            return String.format("(m, v) -> ((%s) m).%s((%s) v)", modelType, method.getSimpleName(), cast);
+        }
+        if (this.accessible(type, field) && !field.getModifiers().contains(Modifier.FINAL)) {
+            return String.format("(m, v) -> ((%s) m).%s = (%s) v", modelType, field.getSimpleName(), cast);
+        }
+        return "null";
+    }
+
+    /**
+     * @param returnType    返回类型，setter 时忽略
+     * @param parameterType 参数类型，为 null 表示无参数
+     */
+    private ExecutableElement findMethod(TypeElement type, String name, TypeMirror returnType, TypeMirror parameterType) {
+        Types types = processingEnv.getTypeUtils();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!method.getSimpleName().contentEquals(name)
+                    || !modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)
+                    || !this.accessible(type, (TypeElement) method.getEnclosingElement())) {
+                continue;
+            }
+            List<? extends VariableElement> parameters = method.getParameters();
+            if (parameterType == null) {
+                if (parameters.isEmpty()
+                        && types.isSameType(types.erasure(method.getReturnType()), types.erasure(returnType))) {
+                    return method;
+                }
+            } else if (parameters.size() == 1
+                    && types.isSameType(types.erasure(parameters.get(0).asType()), types.erasure(parameterType))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 生成的类与模型类位于同一个包，能否直接访问属性
+     */
+    private boolean accessible(TypeElement type, VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        TypeElement declaringType = (TypeElement) field.getEnclosingElement();
+        return modifiers.contains(Modifier.PUBLIC) ?
+                this.accessible(type, declaringType) : this.samePackage(type, declaringType);
+    }
+
+    private boolean accessible(TypeElement type, TypeElement declaringType) {
+        for (Element element = declaringType; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!modifiers.contains(Modifier.PUBLIC) && !this.samePackage(type, (TypeElement) element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean samePackage(TypeElement a, TypeElement b) {
+        Elements elements = processingEnv.getElementUtils();
+        return elements.getPackageOf(a).equals(elements.getPackageOf(b));
+    }
+
+    /**
+     * 生成脚本只需区分是否为基本类型
+     */
+    private Class<?> scriptType(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return boolean.class;
+            case BYTE:
+                return byte.class;
+            case SHORT:
+                return short.class;
+            case INT:
+                return int.class;
+            case LONG:
+                return long.class;
+            case CHAR:
+                return char.class;
+            case FLOAT:
+                return float.class;
+            case DOUBLE:
+                return double.class;
+            default:
+                return Object.class;
+        }
+    }
+
+    private String classLiteral(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return type.toString() + ".class";
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString() + ".class";
+    }
+
+    private String castType(TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass(types.getPrimitiveType(type.getKind())).getQualifiedName().toString();
+        }
+        return types.erasure(type).toString();
+    }
+
+    /**
+     * 注解实例的源码（匿名实现类）
+     */
+    private String annotationSource(AnnotationMirror mirror) {
+        String annotationType = annotationName(mirror);
+        StringBuilder source = new StringBuilder("new ").append(annotationType).append("() {\n")
+                .append("            @Override\n")
+                .append("            public Class<? extends java.lang.annotation.Annotation> annotationType() {\n")
+                .append("                return ").append(annotationType).append(".class;\n")
+                .append("            }\n");
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : this.valuesWithDefaults(mirror).entrySet()) {
+            ExecutableElement method = entry.getKey();
+            source.append("\n            @Override\n")
+                    .append("            public ").append(method.getReturnType()).append(" ")
+                    .append(method.getSimpleName()).append("() {\n")
+                    .append("                return ").append(this.valueSource(method.getReturnType(), entry.getValue())).append(";\n")
+                    .append("            }\n");
+        }
+        return source.append("        }").toString();
+    }
+
+    private String valueSource(TypeMirror type, AnnotationValue annotationValue) {
+        Object value = annotationValue.getValue();
+        if (value instanceof String) {
+            return literal((String) value);
+        } else if (value instanceof Long) {
+            return value + "L";
+        } else if (value instanceof Float) {
+            return value + "F";
+        } else if (value instanceof Double) {
+            return value + "D";
+        } else if (value instanceof Character) {
+            return "(char) " + (int) (Character) value;
+        } else if (value instanceof Byte || value instanceof Short) {
+            return "(" + type + ") " + value;
+        } else if (value instanceof VariableElement) {
+            VariableElement constant = (VariableElement) value;
+            return ((TypeElement) constant.getEnclosingElement()).getQualifiedName() + "." + constant.getSimpleName();
+        } else if (value instanceof TypeMirror) {
+            return this.classLiteral((TypeMirror) value);
+        } else if (value instanceof AnnotationMirror) {
+            return this.annotationSource((AnnotationMirror) value);
+        } else if (value instanceof List) {
+            TypeMirror componentType = ((javax.lang.model.type.ArrayType) type).getComponentType();
+            StringJoiner joiner = new StringJoiner(", ", "new " + processingEnv.getTypeUtils().erasure(componentType) + "[]{", "}");
+            for (Object item : (List<?>) value) {
+                joiner.add(this.valueSource(componentType, (AnnotationValue) item));
+            }
+            return joiner.toString();
+        }
+        return String.valueOf(value);
+    }
+
+    private AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationName.equals(annotationName(mirror))) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Map<? extends ExecutableElement, ? extends AnnotationValue> valuesWithDefaults(AnnotationMirror mirror) {
+        return processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+    }
+
+    private static String annotationName(AnnotationMirror mirror) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private static AnnotationValue value(Map<? extends ExecutableElement, ? extends AnnotationValue> values, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        throw new IllegalArgumentException("注解不存在属性 " + name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<? extends AnnotationValue> listValue(Map<? extends ExecutableElement, ? extends AnnotationValue> values, String name) {
+        return (List<? extends AnnotationValue>) value(values, name).getValue();
+    }
+
+    private List<? extends AnnotationValue> listValue(AnnotationMirror mirror, String name) {
+        return listValue(this.valuesWithDefaults(mirror), name);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Java 字符串字面量，非 ASCII 字符转义为 \\uXXXX
+     */
+    private static String literal(String value) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * 一个 @ModelScan 的扫描条件
+     */
+    private static final class ScanCriteria {
+        private final List<String> basePackages;
+        private final TypeMirror superClass;
+        private final List<TypeMirror> annotationClasses;
+
+        private ScanCriteria(List<String> basePackages, TypeMirror superClass, List<TypeMirror> annotationClasses) {
+            this.basePackages = basePackages;
+            this.superClass = superClass;
+            this.annotationClasses = annotationClasses;
+        }
+
+        private boolean includes(String packageName) {
+            for (String basePackage : this.basePackages) {
+                if (packageName.equals(basePackage) || packageName.startsWith(basePackage + ".")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
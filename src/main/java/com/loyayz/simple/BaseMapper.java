@@ -12,6 +12,8 @@ public interface BaseMapper<T> {
 
     /**
      * 新增（非空字段）
+     * 在开启了工作单元（{@link com.loyayz.simple.mybatis.UnitOfWork}）的事务中暂存、不立即执行，返回 true；
+     * 暂存的操作执行时影响行数不符（如记录不存在）抛出 IllegalStateException
      *
      * @param model 模型对象
      */
@@ -22,8 +24,34 @@ public interface BaseMapper<T> {
      */
     boolean batchInsert(List<T> models);
 
+    /**
+     * 批量新增（所有字段），按批次执行
+     * 每批行数受 simple.batchSize 和数据库参数个数限制
+     *
+     * @return 每批的影响行数
+     */
+    int[] batchInsertCounts(List<T> models);
+
+    /**
+     * 新增或修改（所有字段），一条语句按主键判断记录是否存在
+     * id 为 null 时先按主键策略生成
+     *
+     * @return 是否新增或修改了记录
+     */
+    boolean upsert(T model);
+
+    /**
+     * 批量新增或修改（所有字段），每批一条语句
+     * 同一批中主键相同的记录只保留最后一条，主键为 null 的记录（自增主键）直接新增
+     *
+     * @return 影响行数（MySQL 中修改的记录计为 2），驱动未返回行数时为 {@link java.sql.Statement#SUCCESS_NO_INFO}
+     */
+    int batchUpsert(List<T> models);
+
     /**
      * 根据 ID 删除
+     * 在开启了工作单元（{@link com.loyayz.simple.mybatis.UnitOfWork}）的事务中暂存、不立即执行，返回 true；
+     * 暂存的操作执行时影响行数不符（如记录不存在）抛出 IllegalStateException
      *
      * @param id 主键
      */
@@ -38,6 +66,8 @@ public interface BaseMapper<T> {
 
     /**
      * 根据 id 修改（非空字段）
+     * 在开启了工作单元（{@link com.loyayz.simple.mybatis.UnitOfWork}）的事务中暂存、不立即执行，返回 true；
+     * 暂存的操作执行时影响行数不符（如记录不存在）抛出 IllegalStateException
      */
     boolean updateById(T model);
 
@@ -46,11 +76,108 @@ public interface BaseMapper<T> {
      */
     boolean updateByIdWithNull(T model);
 
+    /**
+     * 根据 id 修改与查询时不同的字段（包括改为 null 的字段）
+     * 模型类需有 @DirtyTracking 注解，且对象通过 findById、listByIds、listByCondition 查询得到；
+     * 否则同 {@link #updateById(Object)}。没有修改的字段时不执行 SQL，返回 true
+     */
+    boolean updateChangedById(T model);
+
+    /**
+     * 根据 id 批量修改（非空字段）
+     * 按非空字段分组后批处理执行，没有非空字段的记录忽略
+     *
+     * @return 影响行数，驱动未返回行数时为 {@link java.sql.Statement#SUCCESS_NO_INFO}
+     */
+    int batchUpdateById(List<T> models);
+
+    /**
+     * 根据 id 批量修改（所有字段），批处理执行
+     *
+     * @return 影响行数，驱动未返回行数时为 {@link java.sql.Statement#SUCCESS_NO_INFO}
+     */
+    int batchUpdateByIdWithNull(List<T> models);
+
+    /**
+     * 批量保存（新增或修改）
+     * id 为 null 的批量新增，其余的批量修改（非空字段）；同时有新增和修改时在同一个批处理会话中执行，一起提交
+     *
+     * @return 影响行数，驱动未返回行数时为 {@link java.sql.Statement#SUCCESS_NO_INFO}
+     */
+    int batchSave(List<T> models);
+
+    /**
+     * 根据 id 原子增减数值字段（SET 字段 = 字段 + delta），不修改内存中的模型对象
+     * 字段值为 NULL 时结果仍为 NULL
+     *
+     * @param id     主键
+     * @param getter 字段的 getter，例 Goods::getStock
+     * @param delta  增量（可以为负数）
+     */
+    boolean incrementById(Serializable id, Sorter.SerializedGet<T, ? extends Number> getter, Number delta);
+
+    /**
+     * 根据 id 原子增减数值字段，仅当结果不小于 min 时修改
+     * 例 扣减库存：incrementById(id, Goods::getStock, -1, 0)
+     *
+     * @param min 修改后的最小值
+     * @return 是否修改（记录不存在或结果小于 min 时为 false）
+     */
+    boolean incrementById(Serializable id, Sorter.SerializedGet<T, ? extends Number> getter, Number delta, Number min);
+
+    /**
+     * 根据条件批量修改（一条 update 语句）
+     * 条件没有非空字段时拒绝执行，避免误改全表
+     *
+     * @param values    修改的值（非空字段）
+     * @param condition 条件（非空字段）
+     * @return 影响行数
+     */
+    default int updateByCondition(T values, T condition) {
+        return this.updateByCondition(values, condition, false);
+    }
+
+    /**
+     * 根据条件批量修改（一条 update 语句）
+     *
+     * @param values              修改的值（非空字段），没有非空字段时不执行
+     * @param condition           条件（非空字段）
+     * @param allowEmptyCondition 条件没有非空字段时是否修改全表
+     * @return 影响行数
+     */
+    int updateByCondition(T values, T condition, boolean allowEmptyCondition);
+
+    /**
+     * 根据条件删除（一条 delete 语句）
+     * 条件没有非空字段时拒绝执行，避免误删全表
+     *
+     * @param condition 条件（非空字段）
+     * @return 影响行数
+     */
+    default int deleteByCondition(T condition) {
+        return this.deleteByCondition(condition, false);
+    }
+
+    /**
+     * 根据条件删除（一条 delete 语句）
+     *
+     * @param condition           条件（非空字段）
+     * @param allowEmptyCondition 条件没有非空字段时是否删除全表
+     * @return 影响行数
+     */
+    int deleteByCondition(T condition, boolean allowEmptyCondition);
+
     /**
      * 根据 id 查询
      */
     Optional<T> findById(Serializable id);
 
+    /**
+     * 根据 id 查询是否存在记录（SELECT 1，不读取字段）
+     * 模型类有 @BloomIndex(trustMisses = true) 注解时，一定不存在的主键不查询数据库
+     */
+    boolean existsById(Serializable id);
+
     /**
      * 根据 ids 查询
      */
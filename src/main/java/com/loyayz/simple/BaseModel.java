@@ -26,6 +26,14 @@ public interface BaseModel<T> {
         }
     }
 
+    /**
+     * 批量保存（新增或修改）
+     * id 为 null 的批量新增，其余的批量修改（非空字段）
+     */
+    default int batchSave(List<T> entities) {
+        return this.mapper().batchSave(entities);
+    }
+
     /**
      * 新增（非空字段）
      */
@@ -40,6 +48,27 @@ public interface BaseModel<T> {
         return this.mapper().batchInsert(entities);
     }
 
+    /**
+     * 批量新增（所有字段），返回每批的影响行数
+     */
+    default int[] batchInsertCounts(List<T> entities) {
+        return this.mapper().batchInsertCounts(entities);
+    }
+
+    /**
+     * 新增或修改（所有字段），一条语句按主键判断记录是否存在
+     */
+    default boolean upsert() {
+        return this.mapper().upsert((T) this);
+    }
+
+    /**
+     * 批量新增或修改（所有字段）
+     */
+    default int batchUpsert(List<T> entities) {
+        return this.mapper().batchUpsert(entities);
+    }
+
     /**
      * 根据主键删除
      */
@@ -70,6 +99,43 @@ public interface BaseModel<T> {
         return this.mapper().updateByIdWithNull((T) this);
     }
 
+    /**
+     * 根据 id 修改与查询时不同的字段（需 @DirtyTracking 注解，否则同 updateById）
+     */
+    default boolean updateChangedById() {
+        return this.mapper().updateChangedById((T) this);
+    }
+
+    /**
+     * 根据 id 批量修改（非空字段）
+     */
+    default int batchUpdateById(List<T> entities) {
+        return this.mapper().batchUpdateById(entities);
+    }
+
+    /**
+     * 根据 id 批量修改（所有字段）
+     */
+    default int batchUpdateByIdWithNull(List<T> entities) {
+        return this.mapper().batchUpdateByIdWithNull(entities);
+    }
+
+    /**
+     * 根据 id 原子增减数值字段（SET 字段 = 字段 + delta）
+     *
+     * @param getter 字段的 getter，例 Goods::getStock
+     */
+    default boolean incrementById(Serializable id, Sorter.SerializedGet<T, ? extends Number> getter, Number delta) {
+        return this.mapper().incrementById(id, getter, delta);
+    }
+
+    /**
+     * 根据 id 原子增减数值字段，仅当结果不小于 min 时修改
+     */
+    default boolean incrementById(Serializable id, Sorter.SerializedGet<T, ? extends Number> getter, Number delta, Number min) {
+        return this.mapper().incrementById(id, getter, delta, min);
+    }
+
     /**
      * 根据 id 查询
      */
@@ -77,6 +143,13 @@ public interface BaseModel<T> {
         return this.mapper().findById(id).orElse(null);
     }
 
+    /**
+     * 根据 id 查询是否存在记录
+     */
+    default boolean existsById(Serializable id) {
+        return this.mapper().existsById(id);
+    }
+
     /**
      * 根据 ids 查询
      */
@@ -112,6 +185,22 @@ public interface BaseModel<T> {
         return this.mapper().existByCondition((T) this);
     }
 
+    /**
+     * 以不为 null 的字段为条件批量修改，条件为空时拒绝执行
+     *
+     * @param values 修改的值（非空字段）
+     */
+    default int updateByCondition(T values) {
+        return this.mapper().updateByCondition(values, (T) this);
+    }
+
+    /**
+     * 以不为 null 的字段为条件删除，条件为空时拒绝执行
+     */
+    default int deleteByCondition() {
+        return this.mapper().deleteByCondition((T) this);
+    }
+
     /**
      * 主键值
      */
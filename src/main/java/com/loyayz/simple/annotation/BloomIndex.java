@@ -0,0 +1,41 @@
+package com.loyayz.simple.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 开启模型主键的布隆过滤器（进程内）
+ * 启动时（或首次使用时）异步扫描全表主键构建，通过 mapper 新增时加入，删除较多时或每隔 refreshSeconds 重新构建
+ * <p>
+ * 只能感知本进程通过 mapper 新增的主键，其他进程（或其他系统）新增的记录在下次重新构建前会被判断为不存在，
+ * 因此默认仍查询数据库确认（{@link #trustMisses()}），查到时加入过滤器
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface BloomIndex {
+
+    /**
+     * 预计的记录数（实际记录数超过 2 倍时重新构建，容量取实际记录数的 2 倍）
+     */
+    long expectedInsertions() default 1_000_000;
+
+    /**
+     * 误判率（不存在的主键判断为可能存在的概率）
+     */
+    double fpp() default 0.01;
+
+    /**
+     * 定期重新构建的间隔（秒），重新构建后才能识别其他进程新增的记录；小于等于 0 表示不定期重新构建（只适用于单个进程写入）
+     */
+    long refreshSeconds() default 300;
+
+    /**
+     * 是否信任不存在的判断：为 true 时 existsById 对一定不存在的主键直接返回 false，不查询数据库，
+     * 只适用于只有当前进程通过 mapper 新增记录的表（否则其他进程新增的记录在重新构建前返回 false）；
+     * 为 false 时仍查询数据库
+     */
+    boolean trustMisses() default false;
+
+}
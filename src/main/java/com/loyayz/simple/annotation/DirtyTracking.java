@@ -0,0 +1,16 @@
+package com.loyayz.simple.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 开启脏字段跟踪
+ * 通过 findById、listByIds、listByCondition 查询的模型对象会记录字段值快照，
+ * updateChangedById 只修改与快照不同的字段
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface DirtyTracking {
+}
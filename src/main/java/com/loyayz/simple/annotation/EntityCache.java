@@ -0,0 +1,35 @@
+package com.loyayz.simple.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 开启模型的实体缓存（进程内，按访问频率淘汰）
+ * findById、listByIds 先从缓存中取，只查询缓存中没有的主键；通过 mapper 修改、删除时移除对应的缓存
+ * 可开启堆外的第二级缓存（内存映射文件），堆内缓存未命中时从文件中读取
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface EntityCache {
+
+    /**
+     * 最多缓存的记录数
+     */
+    int maximumSize() default 10_000;
+
+    /**
+     * 写入缓存后的过期时间（秒），小于等于 0 表示不过期
+     */
+    long ttlSeconds() default 600;
+
+    /**
+     * 大于 0 时开启内存映射文件缓存（堆外，进程重启后保留），为文件大小（MB，最大 1024）
+     * 文件目录可通过系统参数指定，例 -Dsimple.cacheDir=/data/cache，默认为临时目录下的 simple-crud-cache
+     * 只适用于只有当前进程写入、读多写少的表：其他进程或进程停止期间的修改不会移除文件中的记录，最长在 ttlSeconds 后才可见；
+     * ttlSeconds 小于等于 0 时不开启
+     */
+    int mappedFileMb() default 0;
+
+}
@@ -1,5 +1,7 @@
 package com.loyayz.simple.annotation;
 
+import com.loyayz.simple.helper.WorkerIdProvider;
+
 import java.lang.annotation.*;
 
 /**
@@ -29,4 +31,20 @@ public @interface IdStrategy {
      */
     long beginTime() default SNOWFLAKE_BEGIN_TIME;
 
+    /**
+     * 雪花算法机器标识提供者（需有无参构造方法）
+     * 默认为 WorkerIdProvider.class，表示使用全局的机器标识（可通过系统参数设置，例 -Dsimple.workerId=lease）
+     */
+    Class<? extends WorkerIdProvider> workerIdProvider() default WorkerIdProvider.class;
+
+    /**
+     * 号段 tag（号段表中的一行），默认为模型名（表名）
+     */
+    String segmentTag() default "";
+
+    /**
+     * 号段步长（每次申请的主键数量）
+     */
+    int segmentStep() default 1000;
+
 }
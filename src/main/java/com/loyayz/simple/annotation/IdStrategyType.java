@@ -1,5 +1,6 @@
 package com.loyayz.simple.annotation;
 
+import com.loyayz.simple.helper.SegmentIdGenerator;
 import com.loyayz.simple.helper.Snowflake;
 
 /**
@@ -16,9 +17,21 @@ public enum IdStrategyType {
      * UUID.replace("-", "")
      */
     UUID,
+    /**
+     * 按时间有序的 UUID（version 7）
+     * 主键类型为 String 时为 32 位十六进制（无 -），为 byte[] 时为 16 字节二进制，不支持其他类型
+     */
+    UUID_V7,
     /**
      * 数据库自增主键
      * 此时数据库表需要定义主键自增
      */
-    AUTO
+    AUTO,
+    /**
+     * 号段：从号段表批量申请主键，在内存中发放
+     * 主键为连续递增的数字，不依赖时钟和机器标识
+     *
+     * @see SegmentIdGenerator
+     */
+    SEGMENT
 }
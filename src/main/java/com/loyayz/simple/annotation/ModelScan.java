@@ -46,4 +46,10 @@ public @interface ModelScan {
      */
     ModelType type() default ModelType.RDBMS;
 
+    /**
+     * 是否在启动时预先注册模型的 MappedStatement
+     * 默认在首次调用时注册
+     */
+    boolean warmUp() default false;
+
 }
@@ -2,6 +2,8 @@ package com.loyayz.simple.annotation;
 
 import com.loyayz.simple.BaseMapper;
 import com.loyayz.simple.helper.ModelHelper;
+import com.loyayz.simple.helper.ModelIndex;
+import com.loyayz.simple.mybatis.MybatisWarmUp;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
@@ -10,6 +12,7 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
 import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
@@ -24,9 +27,9 @@ import java.util.stream.Collectors;
 /**
  * @author loyayz (loyayz@foxmail.com)
  */
-@SuppressWarnings("all")
 public class ModelScannerRegistrar implements ImportBeanDefinitionRegistrar {
     private static final String MAPPER_BEAN_NAME_PREFIX = "baseMapper#";
+    private static final String WARM_UP_BEAN_NAME_PREFIX = "simpleWarmUp#";
 
     @Override
     public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
@@ -51,11 +54,30 @@ public class ModelScannerRegistrar implements ImportBeanDefinitionRegistrar {
             basePackages.add(defaultBasePackage);
         }
         Class<?> superClass = attrs.getClass("superClass");
-        Class[] annotationClass = attrs.getClassArray("annotationClass");
-        ClassPathModelScanner scanner = new ClassPathModelScanner(basePackages, superClass, annotationClass);
-        Set<String> modelClassNames = scanner.scan();
+        List<Class<? extends Annotation>> annotationClass = Arrays.stream(attrs.getClassArray("annotationClass"))
+                .map(clazz -> clazz.asSubclass(Annotation.class))
+                .collect(Collectors.toList());
+        Set<String> modelClassNames = new LinkedHashSet<>();
+        List<String> scanPackages = new ArrayList<>();
+        for (String basePackage : StringUtils.tokenizeToStringArray(
+                StringUtils.collectionToCommaDelimitedString(basePackages), ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS)) {
+            // 优先使用编译期生成的模型索引，索引不完整（有模块未生成索引或未声明该包）时合并类路径扫描的结果
+            modelClassNames.addAll(ModelIndex.modelClassNames(basePackage));
+            if (!ModelIndex.complete(basePackage)) {
+                scanPackages.add(basePackage);
+            }
+        }
+        if (!scanPackages.isEmpty()) {
+            ClassPathModelScanner scanner = new ClassPathModelScanner(scanPackages, superClass, annotationClass);
+            modelClassNames.addAll(scanner.scan());
+        }
+        List<Class<?>> modelClasses = new ArrayList<>();
         for (String modelClassName : modelClassNames) {
             Class<?> modelClass = ClassUtils.forName(modelClassName, ModelScannerRegistrar.class.getClassLoader());
+            if (!isModelClass(modelClass, superClass, annotationClass)) {
+                continue;
+            }
+            modelClasses.add(modelClass);
             if (ModelHelper.exist(modelClass)) {
                 continue;
             }
@@ -64,6 +86,33 @@ public class ModelScannerRegistrar implements ImportBeanDefinitionRegistrar {
             bean.setTargetType(ResolvableType.forClassWithGenerics(BaseMapper.class, modelClass));
             registry.registerBeanDefinition(beanName(modelClass), bean);
         }
+        if (attrs.getBoolean("warmUp") && !modelClasses.isEmpty()) {
+            RootBeanDefinition bean = new RootBeanDefinition(MybatisWarmUp.class, () -> new MybatisWarmUp(modelClasses));
+            registry.registerBeanDefinition(warmUpBeanName(registry), bean);
+        }
+    }
+
+    /**
+     * 索引中的类可能由其他 @ModelScan 的条件生成，需再次校验
+     */
+    private static boolean isModelClass(Class<?> modelClass, Class<?> superClass, List<Class<? extends Annotation>> annotationClass) {
+        if (superClass.isAssignableFrom(modelClass)) {
+            return true;
+        }
+        for (Class<? extends Annotation> clazz : annotationClass) {
+            if (AnnotatedElementUtils.hasAnnotation(modelClass, clazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String warmUpBeanName(BeanDefinitionRegistry registry) {
+        int index = 0;
+        while (registry.containsBeanDefinition(WARM_UP_BEAN_NAME_PREFIX + index)) {
+            index++;
+        }
+        return WARM_UP_BEAN_NAME_PREFIX + index;
     }
 
     private static String beanName(Class<?> modelClass) {
@@ -94,7 +143,7 @@ public class ModelScannerRegistrar implements ImportBeanDefinitionRegistrar {
 
         ClassPathModelScanner(List<String> basePackages,
                               Class<?> superClass,
-                              Class<? extends Annotation>[] annotationClass) {
+                              List<Class<? extends Annotation>> annotationClass) {
             super(false);
             super.addIncludeFilter(new AssignableTypeFilter(superClass));
             for (Class<? extends Annotation> clazz : annotationClass) {
@@ -0,0 +1,31 @@
+package com.loyayz.simple.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 开启模型的查询缓存（进程内，按访问频率淘汰）
+ * listByCondition、countByCondition 按条件的非空字段、字段值和排序缓存结果；任何 mapper 修改该表时，该表的所有缓存失效
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface QueryCache {
+
+    /**
+     * 最多缓存的查询数
+     */
+    int maximumSize() default 1_000;
+
+    /**
+     * 写入缓存后的过期时间（秒），小于等于 0 表示不过期
+     */
+    long ttlSeconds() default 60;
+
+    /**
+     * listByCondition 结果超过该行数时不缓存
+     */
+    int maxRows() default 1_000;
+
+}
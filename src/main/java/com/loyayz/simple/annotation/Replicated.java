@@ -0,0 +1,27 @@
+package com.loyayz.simple.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 全表复制到内存（适用于字典、地区、配置等数据量小、读多写少的表）
+ * findById、listByIds、listByCondition、countByCondition 及排序在内存中完成；
+ * 通过 mapper 修改该表后重新加载，也可定期重新加载以读取其他进程的修改
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface Replicated {
+
+    /**
+     * 定期重新加载的间隔（秒），小于等于 0 表示只在通过 mapper 修改后重新加载
+     */
+    long refreshSeconds() default 300;
+
+    /**
+     * 最多复制的行数，超过时不复制（查询数据库）
+     */
+    int maxRows() default 10_000;
+
+}
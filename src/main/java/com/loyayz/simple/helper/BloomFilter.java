@@ -0,0 +1,80 @@
+package com.loyayz.simple.helper;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 布隆过滤器（线程安全，不支持删除）
+ * 位数组大小 m = -n·ln(p) / (ln2)²，哈希函数个数 k = m/n·ln2，第 i 个位置为 h1 + i·h2（双重哈希）
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashes;
+
+    /**
+     * @param expectedInsertions 预计的元素个数
+     * @param fpp                误判率（0 到 1 之间）
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        Assert.isTrue(fpp > 0 && fpp < 1, "fpp 必须在 0 到 1 之间");
+        long n = Math.max(expectedInsertions, 1);
+        long m = Math.max(64, (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        int words = (int) Math.min((m + 63) >>> 6, Integer.MAX_VALUE - 8);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) this.bitSize / n * Math.log(2)));
+    }
+
+    /**
+     * 加入元素（元素需正确实现 hashCode，Long 使用完整的 64 位）
+     */
+    public void put(Object key) {
+        long h1 = hash1(key), h2 = hash2(h1);
+        for (int i = 0; i < this.hashes; i++) {
+            long index = Math.floorMod(h1 + i * h2, this.bitSize);
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            long value;
+            while (((value = this.bits.get(word)) & mask) == 0 && !this.bits.compareAndSet(word, value, value | mask)) {
+                // 其他线程同时修改了该 long，重试
+            }
+        }
+    }
+
+    /**
+     * @return false 表示一定不存在
+     */
+    public boolean mightContain(Object key) {
+        long h1 = hash1(key), h2 = hash2(h1);
+        for (int i = 0; i < this.hashes; i++) {
+            long index = Math.floorMod(h1 + i * h2, this.bitSize);
+            if ((this.bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash1(Object key) {
+        return mix(key instanceof Long ? (Long) key : key.hashCode());
+    }
+
+    private static long hash2(long h1) {
+        // 奇数，保证各位置不同
+        return mix(h1 ^ 0x9e3779b97f4a7c15L) | 1L;
+    }
+
+    /**
+     * SplitMix64 的混合函数
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.loyayz.simple.helper;
+
+import javax.sql.DataSource;
+import java.util.function.Supplier;
+
+/**
+ * 需要访问数据库的主键生成器（或机器标识提供者）
+ * 由 mapper 设置其 SqlSession 对应的数据源
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public interface DataSourceAware {
+
+    /**
+     * 设置数据源（首次使用时获取）
+     *
+     * @param dataSource 数据源
+     */
+    void dataSource(Supplier<DataSource> dataSource);
+
+}
@@ -0,0 +1,35 @@
+package com.loyayz.simple.helper;
+
+/**
+ * 主键生成器
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ * @see com.loyayz.simple.annotation.IdStrategyType
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成主键值
+     *
+     * @param info 表信息
+     * @return 主键值
+     */
+    Object generate(ModelInfo info);
+
+    /**
+     * 批量生成主键值
+     * 默认逐个生成，可一次预留多个主键的生成器应覆写此方法
+     *
+     * @param info  表信息
+     * @param count 数量
+     * @return 主键值
+     */
+    default Object[] generate(ModelInfo info, int count) {
+        Object[] result = new Object[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = this.generate(info);
+        }
+        return result;
+    }
+
+}
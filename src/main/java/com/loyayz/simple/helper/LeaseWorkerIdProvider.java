@@ -0,0 +1,232 @@
+package com.loyayz.simple.helper;
+
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 通过数据库租约分配机器标识
+ * <p>
+ * 首次生成 ID 时从租约表中占用一个未被占用或已过期的机器标识，之后每 ttl/3 续约一次。
+ * 续约失败超过 ttl*2/3 时不再使用该标识，下次生成 ID 时重新申请，保证不会与接手该标识的实例同时使用。
+ * 过期时间使用各实例的本地时钟，实例间时钟偏差应远小于 ttl。
+ * 申请到租约后注册 JVM 关闭钩子释放租约，也可主动调用 {@link #release()}；
+ * 释放失败（如数据源已先关闭、进程被强制终止）时租约在 ttl 后过期。
+ * <p>
+ * 租约表（表名和 ttl 可通过系统参数修改，例 -Dsimple.workerLeaseTable=simple_worker_lease -Dsimple.workerLeaseTtl=60000）：
+ * <pre>
+ * CREATE TABLE simple_worker_lease (
+ *     worker_id INT          NOT NULL PRIMARY KEY,
+ *     owner     VARCHAR(64)  NOT NULL,
+ *     expire_at BIGINT       NOT NULL
+ * );
+ * </pre>
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public class LeaseWorkerIdProvider implements WorkerIdProvider, DataSourceAware {
+    private static final String TABLE = System.getProperty("simple.workerLeaseTable", "simple_worker_lease");
+    private static final long TTL = Long.getLong("simple.workerLeaseTtl", 60_000L);
+
+    /**
+     * 租约持有者标识（不使用主机名，避免 DNS 解析）
+     */
+    private final String owner = UUID.randomUUID().toString();
+    private volatile Supplier<DataSource> dataSource;
+    private volatile long workerId = -1;
+    /**
+     * 本地认为租约有效的截止时间
+     */
+    private volatile long validUntil;
+    private ScheduledExecutorService heartbeat;
+    private Thread shutdownHook;
+
+    @Override
+    public void dataSource(Supplier<DataSource> dataSource) {
+        if (this.dataSource == null) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    @Override
+    public long workerId() {
+        long result = this.workerId;
+        if (result >= 0 && System.currentTimeMillis() < this.validUntil) {
+            return result;
+        }
+        synchronized (this) {
+            if (System.currentTimeMillis() >= this.validUntil) {
+                if (this.workerId < 0 || !this.renew()) {
+                    this.acquire();
+                    this.startHeartbeat();
+                    this.registerShutdownHook();
+                }
+            }
+            return this.workerId;
+        }
+    }
+
+    /**
+     * 释放租约（JVM 关闭时自动调用）
+     */
+    public synchronized void release() {
+        if (this.shutdownHook != null && Thread.currentThread() != this.shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+            } catch (IllegalStateException ignore) {
+                // JVM 正在关闭
+            }
+        }
+        this.shutdownHook = null;
+        if (this.heartbeat != null) {
+            this.heartbeat.shutdownNow();
+            this.heartbeat = null;
+        }
+        if (this.workerId < 0) {
+            return;
+        }
+        try (Connection connection = this.connection();
+             PreparedStatement ps = connection.prepareStatement(
+                     String.format("UPDATE %s SET expire_at = 0 WHERE worker_id = ? AND owner = ?", TABLE))) {
+            ps.setLong(1, this.workerId);
+            ps.setString(2, this.owner);
+            ps.executeUpdate();
+        } catch (SQLException | RuntimeException ignore) {
+        }
+        this.workerId = -1;
+        this.validUntil = 0;
+    }
+
+    /**
+     * 续约
+     *
+     * @return 是否成功（租约已被其他实例接手时失败）
+     */
+    private synchronized boolean renew() {
+        if (this.workerId < 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        try (Connection connection = this.connection();
+             PreparedStatement ps = connection.prepareStatement(
+                     String.format("UPDATE %s SET expire_at = ? WHERE worker_id = ? AND owner = ?", TABLE))) {
+            ps.setLong(1, now + TTL);
+            ps.setLong(2, this.workerId);
+            ps.setString(3, this.owner);
+            if (ps.executeUpdate() == 1) {
+                this.validUntil = now + TTL - TTL / 3;
+                return true;
+            }
+        } catch (SQLException | RuntimeException ignore) {
+            // 续约失败时继续使用到 validUntil
+            return false;
+        }
+        this.workerId = -1;
+        this.validUntil = 0;
+        return false;
+    }
+
+    private void acquire() {
+        long now = System.currentTimeMillis();
+        try (Connection connection = this.connection()) {
+            Map<Long, Long> leases = new HashMap<>();
+            try (PreparedStatement ps = connection.prepareStatement(
+                    String.format("SELECT worker_id, expire_at FROM %s", TABLE));
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    leases.put(rs.getLong(1), rs.getLong(2));
+                }
+            }
+            for (long id = 0; id <= MAX_WORKER_ID; id++) {
+                Long expireAt = leases.get(id);
+                boolean acquired;
+                if (expireAt == null) {
+                    acquired = this.insert(connection, id, now);
+                } else if (expireAt < now) {
+                    acquired = this.takeOver(connection, id, expireAt, now);
+                } else {
+                    continue;
+                }
+                if (acquired) {
+                    this.workerId = id;
+                    this.validUntil = now + TTL - TTL / 3;
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("机器标识租约申请失败", e);
+        }
+        throw new IllegalStateException(String.format("机器标识租约申请失败：%s 中 0 - %s 均已被占用", TABLE, MAX_WORKER_ID));
+    }
+
+    /**
+     * 插入新的租约，并发插入导致主键冲突时失败
+     */
+    private boolean insert(Connection connection, long id, long now) {
+        try (PreparedStatement ps = connection.prepareStatement(
+                String.format("INSERT INTO %s (worker_id, owner, expire_at) VALUES (?, ?, ?)", TABLE))) {
+            ps.setLong(1, id);
+            ps.setString(2, this.owner);
+            ps.setLong(3, now + TTL);
+            return ps.executeUpdate() == 1;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 接手过期的租约（按原过期时间乐观更新）
+     */
+    private boolean takeOver(Connection connection, long id, long expireAt, long now) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                String.format("UPDATE %s SET owner = ?, expire_at = ? WHERE worker_id = ? AND expire_at = ?", TABLE))) {
+            ps.setString(1, this.owner);
+            ps.setLong(2, now + TTL);
+            ps.setLong(3, id);
+            ps.setLong(4, expireAt);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    private void startHeartbeat() {
+        if (this.heartbeat != null) {
+            return;
+        }
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simple-worker-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(TTL / 3, 1);
+        this.heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void registerShutdownHook() {
+        if (this.shutdownHook == null) {
+            this.shutdownHook = new Thread(this::release, "simple-worker-lease-release");
+            Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        Supplier<DataSource> dataSource = this.dataSource;
+        Assert.notNull(dataSource, "机器标识租约未配置数据源");
+        Connection connection = dataSource.get().getConnection();
+        if (!connection.getAutoCommit()) {
+            connection.setAutoCommit(true);
+        }
+        return connection;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.loyayz.simple.helper;
+
+/**
+ * 根据 MAC 地址和进程号计算机器标识（原有规则）
+ * 首次生成 ID 时才访问网络接口；多个实例的机器标识可能重复，实例较多时建议使用 {@link LeaseWorkerIdProvider}
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public class MacWorkerIdProvider implements WorkerIdProvider {
+    private static final long MAX_ID = 31L;
+    private volatile long workerId = -1;
+
+    @Override
+    public long workerId() {
+        long result = this.workerId;
+        if (result < 0) {
+            long datacenterId = Snowflake.getDatacenterId(MAX_ID);
+            result = this.workerId = (datacenterId << 5) | Snowflake.getMaxWorkerId(datacenterId, MAX_ID);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,364 @@
+package com.loyayz.simple.helper;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于内存映射文件的键值存储（堆外，进程重启后保留）
+ * <p>
+ * 文件结构：文件头（64 字节）+ 索引区（开放寻址哈希表，每个槽 16 字节：键哈希、记录偏移、记录长度）+ 数据区（追加写入）。
+ * 记录：过期时间（毫秒时间戳）、键长度、值长度、键、值。删除只把槽标记为已删除；
+ * 数据区写满或索引区使用超过 3/4 时清空整个文件重新写入。
+ * <p>
+ * 文件头记录结构指纹和文件大小，打开时不一致则清空；首次写入时标记为未正常关闭，
+ * {@link #close()}（JVM 退出时自动调用）后标记为正常关闭，进程异常退出后的文件在下次打开时清空。
+ * 同一个文件同时只能被一个进程打开（文件锁）。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class MappedStore {
+    private static final Log log = LogFactory.getLog(MappedStore.class);
+    private static final int MAGIC = 0x53434d53;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int OFFSET_FINGERPRINT = 8, OFFSET_FILE_SIZE = 16, OFFSET_SLOT_COUNT = 24,
+            OFFSET_TAIL = 28, OFFSET_CLEAN = 32;
+    /**
+     * 槽的记录偏移：0 为空，-1 为已删除
+     */
+    private static final int EMPTY = 0, DELETED = -1;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer buffer;
+    private final int fileSize;
+    private final int slotCount;
+    private final int dataStart;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 使用中（含已删除）的槽数
+     */
+    private int usedSlots;
+    private int liveSlots;
+    private boolean dirty;
+    private volatile boolean closed;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private MappedStore(Path file, FileChannel channel, FileLock fileLock, MappedByteBuffer buffer, int fileSize) {
+        this.file = file;
+        this.channel = channel;
+        this.fileLock = fileLock;
+        this.buffer = buffer;
+        this.fileSize = fileSize;
+        // 索引区约占文件的 1/8
+        this.slotCount = Math.max(64, fileSize / 8 / SLOT_SIZE);
+        this.dataStart = HEADER_SIZE + this.slotCount * SLOT_SIZE;
+    }
+
+    /**
+     * 打开（不存在时创建）
+     *
+     * @param fingerprint 值的结构指纹，与文件中的不一致时清空
+     * @param sizeMb      文件大小（MB，最大 1024）
+     * @return 无法打开（如已被其他进程打开）时为 null
+     */
+    public static MappedStore open(Path file, long fingerprint, int sizeMb) {
+        int fileSize = Math.min(Math.max(sizeMb, 1), 1024) * 1024 * 1024;
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = new RandomAccessFile(file.toFile(), "rw").getChannel();
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                throw new IOException("file is locked by another process");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            MappedStore store = new MappedStore(file, channel, fileLock, buffer, fileSize);
+            store.load(fingerprint);
+            Runtime.getRuntime().addShutdownHook(new Thread(store::close, "simple-mapped-store-close"));
+            return store;
+        } catch (IOException | OverlappingFileLockException e) {
+            log.warn(String.format("Failed to open mapped store %s: %s", file, e));
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // 忽略
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return 值，不存在或已过期时为 null
+     */
+    public byte[] get(byte[] key) {
+        this.lock.readLock().lock();
+        try {
+            int slot = this.closed ? -1 : this.find(key, hash(key));
+            if (slot >= 0) {
+                int offset = this.buffer.getInt(this.slotPosition(slot) + 8);
+                long expireAt = this.buffer.getLong(offset);
+                if (expireAt == 0 || expireAt > System.currentTimeMillis()) {
+                    byte[] value = new byte[this.buffer.getInt(offset + 12)];
+                    ByteBuffer view = this.buffer.duplicate();
+                    view.position(offset + RECORD_HEADER_SIZE + key.length);
+                    view.get(value);
+                    this.hits.increment();
+                    return value;
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        this.misses.increment();
+        return null;
+    }
+
+    /**
+     * @param expireAt 过期时间（毫秒时间戳），0 表示不过期
+     */
+    public void put(byte[] key, byte[] value, long expireAt) {
+        int length = RECORD_HEADER_SIZE + key.length + value.length;
+        if (length > this.fileSize - this.dataStart) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.markDirty();
+            long hash = hash(key);
+            this.delete(this.find(key, hash));
+            int tail = this.buffer.getInt(OFFSET_TAIL);
+            if (tail + length > this.fileSize || this.usedSlots + 1 > this.slotCount / 4 * 3) {
+                this.reset();
+                tail = this.dataStart;
+            }
+            ByteBuffer view = this.buffer.duplicate();
+            view.position(tail);
+            view.putLong(expireAt).putInt(key.length).putInt(value.length).put(key).put(value);
+            this.buffer.putInt(OFFSET_TAIL, tail + length);
+            int slot = this.firstFree(hash);
+            int position = this.slotPosition(slot);
+            if (this.buffer.getInt(position + 8) == EMPTY) {
+                this.usedSlots++;
+            }
+            this.liveSlots++;
+            this.buffer.putLong(position, hash);
+            this.buffer.putInt(position + 12, length);
+            // 最后写入偏移，槽才生效
+            this.buffer.putInt(position + 8, tail);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(byte[] key) {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.closed) {
+                int slot = this.find(key, hash(key));
+                if (slot >= 0) {
+                    this.markDirty();
+                    this.delete(slot);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.closed) {
+                this.markDirty();
+                this.reset();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 标记为正常关闭并写回磁盘，关闭后不再读写
+     */
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.buffer.putInt(OFFSET_CLEAN, 1);
+            this.buffer.force();
+            this.fileLock.release();
+            this.channel.close();
+        } catch (IOException e) {
+            log.warn(String.format("Failed to close mapped store %s: %s", this.file, e.getMessage()));
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public long hitCount() {
+        return this.hits.sum();
+    }
+
+    public long missCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * 记录数
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.liveSlots;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%s misses=%s size=%s file=%s", this.hitCount(), this.missCount(), this.size(), this.file);
+    }
+
+    private void load(long fingerprint) {
+        boolean valid = this.buffer.getInt(0) == MAGIC
+                && this.buffer.getInt(4) == VERSION
+                && this.buffer.getLong(OFFSET_FINGERPRINT) == fingerprint
+                && this.buffer.getLong(OFFSET_FILE_SIZE) == this.fileSize
+                && this.buffer.getInt(OFFSET_SLOT_COUNT) == this.slotCount
+                && this.buffer.getInt(OFFSET_CLEAN) == 1;
+        if (!valid) {
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, VERSION);
+            this.buffer.putLong(OFFSET_FINGERPRINT, fingerprint);
+            this.buffer.putLong(OFFSET_FILE_SIZE, this.fileSize);
+            this.buffer.putInt(OFFSET_SLOT_COUNT, this.slotCount);
+            this.reset();
+            this.buffer.putInt(OFFSET_CLEAN, 1);
+            this.buffer.force();
+            return;
+        }
+        for (int slot = 0; slot < this.slotCount; slot++) {
+            int offset = this.buffer.getInt(this.slotPosition(slot) + 8);
+            if (offset != EMPTY) {
+                this.usedSlots++;
+                if (offset != DELETED) {
+                    this.liveSlots++;
+                }
+            }
+        }
+    }
+
+    private void markDirty() {
+        if (!this.dirty) {
+            this.dirty = true;
+            this.buffer.putInt(OFFSET_CLEAN, 0);
+            this.buffer.force();
+        }
+    }
+
+    private void reset() {
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(HEADER_SIZE);
+        byte[] zeros = new byte[8192];
+        for (int remaining = this.slotCount * SLOT_SIZE; remaining > 0; remaining -= zeros.length) {
+            view.put(zeros, 0, Math.min(zeros.length, remaining));
+        }
+        this.buffer.putInt(OFFSET_TAIL, this.dataStart);
+        this.usedSlots = 0;
+        this.liveSlots = 0;
+    }
+
+    private void delete(int slot) {
+        if (slot >= 0) {
+            this.buffer.putInt(this.slotPosition(slot) + 8, DELETED);
+            this.liveSlots--;
+        }
+    }
+
+    /**
+     * @return 槽号，不存在时为 -1
+     */
+    private int find(byte[] key, long hash) {
+        int slot = this.firstSlot(hash);
+        for (int i = 0; i < this.slotCount; i++) {
+            int position = this.slotPosition(slot);
+            int offset = this.buffer.getInt(position + 8);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != DELETED && this.buffer.getLong(position) == hash && this.keyEquals(offset, key)) {
+                return slot;
+            }
+            slot = slot + 1 == this.slotCount ? 0 : slot + 1;
+        }
+        return -1;
+    }
+
+    private int firstFree(long hash) {
+        int slot = this.firstSlot(hash);
+        while (true) {
+            int offset = this.buffer.getInt(this.slotPosition(slot) + 8);
+            if (offset == EMPTY || offset == DELETED) {
+                return slot;
+            }
+            slot = slot + 1 == this.slotCount ? 0 : slot + 1;
+        }
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if (offset < this.dataStart || offset + RECORD_HEADER_SIZE > this.fileSize
+                || this.buffer.getInt(offset + 8) != key.length) {
+            return false;
+        }
+        byte[] stored = new byte[key.length];
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(offset + RECORD_HEADER_SIZE);
+        view.get(stored);
+        return Arrays.equals(stored, key);
+    }
+
+    private int firstSlot(long hash) {
+        return (int) Math.floorMod(hash, (long) this.slotCount);
+    }
+
+    private int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,446 @@
+package com.loyayz.simple.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 模型对象的二进制编码（按 {@link ModelInfo#fields()} 的顺序）
+ * <p>
+ * 格式：null 位图（每个字段 1 位）+ 非空字段值。数值为定长，字符串、数组为长度 + 内容，
+ * 日期时间为毫秒或纳秒数，枚举为名称。字段类型或顺序改变时 {@link #fingerprint()} 随之改变。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class ModelCodec {
+    private static final int VERSION = 1;
+
+    private final ModelInfo modelInfo;
+    private final List<ModelField> fields;
+    private final Type[] types;
+    private final long fingerprint;
+
+    private ModelCodec(ModelInfo modelInfo, Type[] types) {
+        this.modelInfo = modelInfo;
+        this.fields = modelInfo.fields();
+        this.types = types;
+        StringBuilder schema = new StringBuilder().append(VERSION).append('|').append(modelInfo.modelClass().getName());
+        for (ModelField field : this.fields) {
+            schema.append('|').append(field.property()).append(':').append(field.column())
+                    .append(':').append(field.propertyType().getName());
+        }
+        this.fingerprint = fnv1a(schema.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 有不支持的字段类型时为 null
+     */
+    public static ModelCodec of(ModelInfo modelInfo) {
+        List<ModelField> fields = modelInfo.fields();
+        Type[] types = new Type[fields.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = Type.of(fields.get(i).propertyType());
+            if (types[i] == null) {
+                return null;
+            }
+        }
+        return new ModelCodec(modelInfo, types);
+    }
+
+    /**
+     * 模型结构的指纹（类名、属性名、字段名、属性类型和编码版本）
+     */
+    public long fingerprint() {
+        return this.fingerprint;
+    }
+
+    public byte[] encode(Object model) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            byte[] nulls = new byte[(this.types.length + 7) >>> 3];
+            Object[] values = new Object[this.types.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.fields.get(i).value(model);
+                if (values[i] == null) {
+                    nulls[i >>> 3] |= 1 << (i & 7);
+                }
+            }
+            out.write(nulls);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    this.types[i].write(out, values[i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Object decode(byte[] data) {
+        Object model = this.modelInfo.newInstance();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte[] nulls = new byte[(this.types.length + 7) >>> 3];
+            in.readFully(nulls);
+            for (int i = 0; i < this.types.length; i++) {
+                if ((nulls[i >>> 3] & (1 << (i & 7))) == 0) {
+                    ModelField field = this.fields.get(i);
+                    field.value(model, this.types[i].read(in, field.propertyType()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return model;
+    }
+
+    /**
+     * 主键的编码（主键先经 {@link Utils#idKey(Object)} 归一化，Integer 与 Long 的同一数值编码相同）
+     */
+    public static byte[] encodeKey(Object idKey) {
+        if (idKey instanceof Long) {
+            return ByteBuffer.allocate(9).put((byte) 1).putLong((Long) idKey).array();
+        }
+        byte tag;
+        byte[] content;
+        if (idKey instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) idKey).duplicate();
+            tag = 2;
+            content = new byte[buffer.remaining()];
+            buffer.get(content);
+        } else if (idKey instanceof String) {
+            tag = 3;
+            content = ((String) idKey).getBytes(StandardCharsets.UTF_8);
+        } else {
+            tag = 4;
+            content = String.valueOf(idKey).getBytes(StandardCharsets.UTF_8);
+        }
+        return ByteBuffer.allocate(1 + content.length).put(tag).put(content).array();
+    }
+
+    private static long fnv1a(byte[] data) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private enum Type {
+        BOOLEAN {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeBoolean((Boolean) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readBoolean();
+            }
+        },
+        BYTE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeByte((Byte) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readByte();
+            }
+        },
+        SHORT {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeShort((Short) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readShort();
+            }
+        },
+        CHAR {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeChar((Character) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readChar();
+            }
+        },
+        INT {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeInt((Integer) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readInt();
+            }
+        },
+        LONG {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong((Long) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readLong();
+            }
+        },
+        FLOAT {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeFloat((Float) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readFloat();
+            }
+        },
+        DOUBLE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeDouble((Double) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return in.readDouble();
+            }
+        },
+        STRING {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            }
+        },
+        BYTES {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeBytes(out, (byte[]) value);
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return readBytes(in);
+            }
+        },
+        BIG_INTEGER {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                writeBytes(out, ((BigInteger) value).toByteArray());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return new BigInteger(readBytes(in));
+            }
+        },
+        BIG_DECIMAL {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeInt(decimal.scale());
+                writeBytes(out, decimal.unscaledValue().toByteArray());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                int scale = in.readInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            }
+        },
+        /**
+         * java.util.Date、java.sql.Date、java.sql.Time：毫秒数
+         */
+        DATE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong(((Date) value).getTime());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                long time = in.readLong();
+                if (type == java.sql.Date.class) {
+                    return new java.sql.Date(time);
+                } else if (type == java.sql.Time.class) {
+                    return new java.sql.Time(time);
+                }
+                return new Date(time);
+            }
+        },
+        TIMESTAMP {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                Timestamp timestamp = (Timestamp) value;
+                out.writeLong(timestamp.getTime());
+                out.writeInt(timestamp.getNanos());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            }
+        },
+        LOCAL_DATE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong(((LocalDate) value).toEpochDay());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return LocalDate.ofEpochDay(in.readLong());
+            }
+        },
+        LOCAL_TIME {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong(((LocalTime) value).toNanoOfDay());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return LocalTime.ofNanoOfDay(in.readLong());
+            }
+        },
+        LOCAL_DATE_TIME {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                out.writeLong(dateTime.toLocalDate().toEpochDay());
+                out.writeLong(dateTime.toLocalTime().toNanoOfDay());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+            }
+        },
+        INSTANT {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                Instant instant = (Instant) value;
+                out.writeLong(instant.getEpochSecond());
+                out.writeInt(instant.getNano());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return Instant.ofEpochSecond(in.readLong(), in.readInt());
+            }
+        },
+        UUID_TYPE {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeLong(((UUID) value).getMostSignificantBits());
+                out.writeLong(((UUID) value).getLeastSignificantBits());
+            }
+
+            @Override
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return new UUID(in.readLong(), in.readLong());
+            }
+        },
+        ENUM {
+            @Override
+            void write(DataOutputStream out, Object value) throws IOException {
+                out.writeUTF(((Enum<?>) value).name());
+            }
+
+            @Override
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Object read(DataInputStream in, Class<?> type) throws IOException {
+                return Enum.valueOf((Class<? extends Enum>) type, in.readUTF());
+            }
+        };
+
+        abstract void write(DataOutputStream out, Object value) throws IOException;
+
+        abstract Object read(DataInputStream in, Class<?> type) throws IOException;
+
+        static Type of(Class<?> type) {
+            if (type == Boolean.class || type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == Byte.class || type == byte.class) {
+                return BYTE;
+            } else if (type == Short.class || type == short.class) {
+                return SHORT;
+            } else if (type == Character.class || type == char.class) {
+                return CHAR;
+            } else if (type == Integer.class || type == int.class) {
+                return INT;
+            } else if (type == Long.class || type == long.class) {
+                return LONG;
+            } else if (type == Float.class || type == float.class) {
+                return FLOAT;
+            } else if (type == Double.class || type == double.class) {
+                return DOUBLE;
+            } else if (type == String.class) {
+                return STRING;
+            } else if (type == byte[].class) {
+                return BYTES;
+            } else if (type == BigInteger.class) {
+                return BIG_INTEGER;
+            } else if (type == BigDecimal.class) {
+                return BIG_DECIMAL;
+            } else if (type == Timestamp.class) {
+                return TIMESTAMP;
+            } else if (type == Date.class || type == java.sql.Date.class || type == java.sql.Time.class) {
+                return DATE;
+            } else if (type == LocalDate.class) {
+                return LOCAL_DATE;
+            } else if (type == LocalTime.class) {
+                return LOCAL_TIME;
+            } else if (type == LocalDateTime.class) {
+                return LOCAL_DATE_TIME;
+            } else if (type == Instant.class) {
+                return INSTANT;
+            } else if (type == UUID.class) {
+                return UUID_TYPE;
+            } else if (type.isEnum()) {
+                return ENUM;
+            }
+            return null;
+        }
+
+        private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+
+        private static byte[] readBytes(DataInputStream in) throws IOException {
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return value;
+        }
+    }
+
+}
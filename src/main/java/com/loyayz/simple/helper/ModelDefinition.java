@@ -0,0 +1,48 @@
+package com.loyayz.simple.helper;
+
+import com.loyayz.simple.annotation.IdStrategy;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译期生成的模型信息
+ * 由 simple-crud-processor 为扫描到的模型类生成实现（类名为 模型类名_SimpleModel），
+ * 并登记到 {@link ModelIndex#LOCATION}。存在时 {@link ModelHelper#init(Class)} 不再反射解析模型类。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public interface ModelDefinition {
+
+    /**
+     * 模型类
+     */
+    Class<?> modelClass();
+
+    /**
+     * 模型名（表名）
+     */
+    String modelName();
+
+    /**
+     * 字段列表（已按 @Column 等注解处理）
+     */
+    List<ModelField> fields();
+
+    /**
+     * 主键属性名，无主键时为 null
+     */
+    String idProperty();
+
+    /**
+     * 主键策略，主键未配置 @IdStrategy 时为 null
+     */
+    IdStrategy idStrategy();
+
+    /**
+     * 固定的 SQL 脚本
+     * 方法名 -> 脚本
+     */
+    Map<String, String> scripts();
+
+}
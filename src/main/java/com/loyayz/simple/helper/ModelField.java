@@ -5,11 +5,14 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.Column;
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * @author loyayz (loyayz@foxmail.com)
@@ -19,6 +22,10 @@ import java.lang.reflect.Field;
 @EqualsAndHashCode
 public class ModelField implements Serializable {
     private static final long serialVersionUID = -1L;
+    /**
+     * 属性
+     * 通过 {@link ModelDefinition} 创建时为 null
+     */
     private final Field field;
     /**
      * 属性名
@@ -42,16 +49,91 @@ public class ModelField implements Serializable {
      */
     @Setter(AccessLevel.PACKAGE)
     private boolean updatable;
+    /**
+     * 属性所属的模型类，用于延迟生成读写函数
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final transient Class<?> modelClass;
+    /**
+     * 属性读写函数
+     *
+     * @see PropertyAccessors
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private transient volatile Function<Object, Object> getter;
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private transient volatile BiConsumer<Object, Object> setter;
+
+    /**
+     * 获取模型对象的属性值
+     *
+     * @param model 模型对象
+     * @return 属性值
+     */
+    public Object value(Object model) {
+        Function<Object, Object> getter = this.getter;
+        if (getter == null) {
+            getter = this.getter = PropertyAccessors.getter(this.reflectField());
+        }
+        return getter.apply(model);
+    }
+
+    /**
+     * 设置模型对象的属性值
+     *
+     * @param model 模型对象
+     * @param value 属性值
+     */
+    public void value(Object model, Object value) {
+        BiConsumer<Object, Object> setter = this.setter;
+        if (setter == null) {
+            setter = this.setter = PropertyAccessors.setter(this.reflectField());
+        }
+        setter.accept(model, value);
+    }
 
     static ModelField of(Field field) {
         return new ModelField(field);
     }
 
+    /**
+     * 根据编译期生成的信息创建字段
+     *
+     * @param modelClass 模型类
+     * @param getter     读函数，为 null 时在首次使用时通过反射生成
+     * @param setter     写函数，为 null 时在首次使用时通过反射生成
+     */
+    public static ModelField of(Class<?> modelClass, String property, Class<?> propertyType, String column,
+                                boolean insertable, boolean updatable,
+                                Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+        return new ModelField(modelClass, property, propertyType, column, insertable, updatable, getter, setter);
+    }
+
+    private ModelField(Class<?> modelClass, String property, Class<?> propertyType, String column,
+                       boolean insertable, boolean updatable,
+                       Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+        this.field = null;
+        this.modelClass = modelClass;
+        this.property = property;
+        this.propertyType = propertyType;
+        this.column = column;
+        this.insertable = insertable;
+        this.updatable = updatable;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
     private ModelField(Field field) {
         field.setAccessible(true);
         this.field = field;
+        this.modelClass = field.getDeclaringClass();
         this.property = field.getName();
         this.propertyType = field.getType();
+        this.getter = PropertyAccessors.getter(field);
+        this.setter = PropertyAccessors.setter(field);
 
         boolean insertable = true;
         boolean updatable = true;
@@ -72,4 +154,18 @@ public class ModelField implements Serializable {
         this.column = columnName;
     }
 
+    private Field reflectField() {
+        if (this.field != null) {
+            return this.field;
+        }
+        Assert.notNull(this.modelClass, String.format("属性 %s 未指定模型类", this.property));
+        Field result = Utils.getFields(this.modelClass, f -> f.getName().equals(this.property))
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        String.format("%s 不存在属性 %s", this.modelClass.getName(), this.property)));
+        result.setAccessible(true);
+        return result;
+    }
+
 }
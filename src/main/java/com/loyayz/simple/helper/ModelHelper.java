@@ -3,16 +3,24 @@ package com.loyayz.simple.helper;
 import com.loyayz.simple.BaseMapper;
 import com.loyayz.simple.mybatis.MybatisBaseMapper;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
+ * 模型类 -> mapper、表信息
+ * 使用 ClassValue 挂在模型类自身上：查询不需要哈希查找，也不阻止类加载器卸载（如 devtools 重启）
+ *
  * @author loyayz (loyayz@foxmail.com)
  */
 @SuppressWarnings("all")
 public final class ModelHelper {
-    private static final Map<Class<?>, BaseMapper> MAPPER_CACHE = new ConcurrentHashMap<>();
-    private static final Map<Class<?>, ModelInfo> INFO_CACHE = new ConcurrentHashMap<>();
+    /**
+     * 代理类与其模型类共用同一个 Holder，查询时无需再解析代理类
+     */
+    private static final ClassValue<Holder> HOLDERS = new ClassValue<Holder>() {
+        @Override
+        protected Holder computeValue(Class<?> type) {
+            Class<?> targetClass = Utils.getTargetClass(type);
+            return targetClass == type ? new Holder() : HOLDERS.get(targetClass);
+        }
+    };
 
     /**
      * 获取模型类对应的 mapper
@@ -21,8 +29,7 @@ public final class ModelHelper {
      * @return mapper
      */
     public static <T> BaseMapper<T> mapper(Class<?> clazz) {
-        clazz = Utils.getTargetClass(clazz);
-        return MAPPER_CACHE.get(clazz);
+        return HOLDERS.get(clazz).mapper;
     }
 
     /**
@@ -32,23 +39,27 @@ public final class ModelHelper {
      * @return 表信息
      */
     public static ModelInfo modelInfo(Class<?> clazz) {
-        clazz = Utils.getTargetClass(clazz);
-        return INFO_CACHE.get(clazz);
+        return HOLDERS.get(clazz).info;
     }
 
     /**
      * 初始化模型类对应的表信息
+     * 存在编译期生成的模型信息（{@link ModelIndex}）时直接使用，否则反射解析模型类
      *
      * @param clazz 模型类
      * @return mapper
      */
-    public synchronized static BaseMapper<?> init(Class<?> clazz) {
+    public static BaseMapper<?> init(Class<?> clazz) {
         clazz = Utils.getTargetClass(clazz);
-        ModelInfo info = ModelInfo.of(clazz);
-        BaseMapper<?> mapper = new MybatisBaseMapper(clazz, info);
-        MAPPER_CACHE.put(clazz, mapper);
-        INFO_CACHE.put(clazz, info);
-        return mapper;
+        Holder holder = HOLDERS.get(clazz);
+        synchronized (holder) {
+            ModelDefinition definition = ModelIndex.definition(clazz);
+            ModelInfo info = definition == null ? ModelInfo.of(clazz) : ModelInfo.of(definition);
+            BaseMapper<?> mapper = new MybatisBaseMapper(clazz, info);
+            holder.info = info;
+            holder.mapper = mapper;
+            return mapper;
+        }
     }
 
     /**
@@ -58,8 +69,15 @@ public final class ModelHelper {
      * @return 是否已初始化
      */
     public static boolean exist(Class<?> clazz) {
-        clazz = Utils.getTargetClass(clazz);
-        return MAPPER_CACHE.containsKey(clazz);
+        return HOLDERS.get(clazz).mapper != null;
+    }
+
+    /**
+     * 按模型类加锁初始化，不同模型类可并发初始化
+     */
+    private static final class Holder {
+        private volatile BaseMapper mapper;
+        private volatile ModelInfo info;
     }
 
 }
@@ -0,0 +1,171 @@
+package com.loyayz.simple.helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期生成的模型索引
+ * 索引文件每行为：模型类名=模型信息类名（{@link ModelDefinition} 的实现），
+ * 或 @包名（该模块编译时已处理该包下的所有模型类）
+ * <p>
+ * 每个模块（jar 或 classes 目录）有各自的索引文件，只有包含某个包的所有模块都声明了该包时，索引才完整
+ * <p>
+ * 可通过系统参数关闭，例 -Dsimple.modelIndex=false（例如 IDE 增量编译生成的索引不完整时）
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class ModelIndex {
+    /**
+     * 索引文件位置
+     */
+    public static final String LOCATION = "META-INF/simple-crud/models";
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("simple.modelIndex", "true"));
+    private static final String PACKAGE_PREFIX = "@";
+    private static volatile Index index;
+
+    /**
+     * 索引中位于指定包（含子包）下的模型类名
+     *
+     * @param basePackage 包名
+     * @return 模型类名，索引不存在时为空
+     */
+    public static Set<String> modelClassNames(String basePackage) {
+        String prefix = basePackage.endsWith(".") ? basePackage : basePackage + ".";
+        Set<String> result = new LinkedHashSet<>();
+        for (String modelClassName : index().definitions.keySet()) {
+            if (modelClassName.startsWith(prefix)) {
+                result.add(modelClassName);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取模型类的编译期模型信息
+     *
+     * @param modelClass 模型类
+     * @return 模型信息，不存在时为 null
+     */
+    public static ModelDefinition definition(Class<?> modelClass) {
+        String definitionClassName = index().definitions.get(modelClass.getName());
+        if (definitionClassName == null) {
+            return null;
+        }
+        try {
+            Class<?> definitionClass = Class.forName(definitionClassName, true, modelClass.getClassLoader());
+            return (ModelDefinition) definitionClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException(String.format("无法加载 %s 的模型信息 %s",
+                    modelClass.getName(), definitionClassName), e);
+        }
+    }
+
+    /**
+     * 索引是否包含指定包（含子包）下的所有模型类：类路径中包含该包的每个模块都有索引且声明了该包
+     * 不完整时需扫描类路径
+     *
+     * @param basePackage 包名
+     */
+    public static boolean complete(String basePackage) {
+        Index current = index();
+        if (current.packages.isEmpty()) {
+            return false;
+        }
+        String path = basePackage.replace('.', '/');
+        try {
+            Enumeration<URL> urls = resources(ModelIndex.class.getClassLoader(), path);
+            boolean found = false;
+            while (urls.hasMoreElements()) {
+                String url = urls.nextElement().toString();
+                if (url.endsWith("/")) {
+                    url = url.substring(0, url.length() - 1);
+                }
+                if (!url.endsWith(path)) {
+                    return false;
+                }
+                Set<String> packages = current.packages.get(url.substring(0, url.length() - path.length()));
+                if (packages == null || !covers(packages, basePackage)) {
+                    return false;
+                }
+                found = true;
+            }
+            return found;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean covers(Set<String> packages, String basePackage) {
+        for (String pkg : packages) {
+            if (basePackage.equals(pkg) || basePackage.startsWith(pkg + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Index index() {
+        Index result = index;
+        if (result == null) {
+            synchronized (ModelIndex.class) {
+                result = index;
+                if (result == null) {
+                    result = index = ENABLED ? load(ModelIndex.class.getClassLoader()) : new Index();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Index load(ClassLoader classLoader) {
+        Index result = new Index();
+        try {
+            Enumeration<URL> urls = resources(classLoader, LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                String root = url.toString();
+                root = root.substring(0, root.length() - LOCATION.length());
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(PACKAGE_PREFIX)) {
+                            result.packages.computeIfAbsent(root, key -> new HashSet<>())
+                                    .add(line.substring(PACKAGE_PREFIX.length()).trim());
+                            continue;
+                        }
+                        int index = line.indexOf('=');
+                        if (line.startsWith("#") || index <= 0) {
+                            continue;
+                        }
+                        result.definitions.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    private static Enumeration<URL> resources(ClassLoader classLoader, String name) throws IOException {
+        return classLoader == null ? ClassLoader.getSystemResources(name) : classLoader.getResources(name);
+    }
+
+    private static final class Index {
+        /**
+         * 模型类名 -> 模型信息类名
+         */
+        private final Map<String, String> definitions = new HashMap<>();
+        /**
+         * 模块根路径 -> 已完整处理的包
+         */
+        private final Map<String, Set<String>> packages = new HashMap<>();
+    }
+
+}
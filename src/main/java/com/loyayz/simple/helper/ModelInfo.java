@@ -1,9 +1,10 @@
 package com.loyayz.simple.helper;
 
+import com.loyayz.simple.annotation.DirtyTracking;
 import com.loyayz.simple.annotation.IdStrategy;
 import com.loyayz.simple.annotation.IdStrategyType;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.SneakyThrows;
 import lombok.experimental.Accessors;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -11,12 +12,16 @@ import org.springframework.util.StringUtils;
 import javax.persistence.Id;
 import javax.persistence.Table;
 import javax.persistence.Transient;
+import javax.sql.DataSource;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +36,11 @@ public class ModelInfo implements Serializable {
      * 默认表主键名称
      */
     private static final String DEFAULT_ID_NAME = "id";
+    /**
+     * 是否每个模型使用独立的雪花算法生成器（默认所有模型共用一个）
+     * 不同模型的主键可能重复，但互不竞争，可通过系统参数开启，例 -Dsimple.snowflakePerModel=true
+     */
+    private static final boolean SNOWFLAKE_PER_MODEL = Boolean.getBoolean("simple.snowflakePerModel");
     /**
      * 模型类
      */
@@ -55,15 +65,54 @@ public class ModelInfo implements Serializable {
      * 是否自增主键
      */
     private final boolean autoId;
+    /**
+     * 编译期生成的固定 SQL 脚本（方法名 -> 脚本）
+     * 反射解析的模型为 null
+     */
+    private final Map<String, String> scripts;
+    /**
+     * 字段值快照，模型类有 @DirtyTracking 注解时才有值
+     */
+    private final transient ModelSnapshots snapshots;
+    /**
+     * 无参构造函数，首次使用时生成
+     */
+    @Getter(AccessLevel.NONE)
+    private transient volatile Supplier<Object> constructor;
 
     static ModelInfo of(Class<?> modelClass) {
         return new ModelInfo(modelClass);
     }
 
-    @SneakyThrows
+    static ModelInfo of(ModelDefinition definition) {
+        return new ModelInfo(definition);
+    }
+
     public <T> Object idValue(T model) {
         Assert.notNull(idField, String.format("%s 未配置 id 字段", modelClass.getName()));
-        return idField.field().get(model);
+        return idField.value(model);
+    }
+
+    /**
+     * 创建模型对象（无参构造方法）
+     */
+    public Object newInstance() {
+        Supplier<Object> constructor = this.constructor;
+        if (constructor == null) {
+            constructor = this.constructor = PropertyAccessors.constructor(this.modelClass);
+        }
+        return constructor.get();
+    }
+
+    /**
+     * 复制模型对象（字段值浅复制，数组和 Date 复制副本）
+     */
+    public Object copy(Object model) {
+        Object result = this.newInstance();
+        for (ModelField field : this.fields) {
+            field.value(result, ModelSnapshots.copy(field.value(model)));
+        }
+        return result;
     }
 
     /**
@@ -84,19 +133,43 @@ public class ModelInfo implements Serializable {
                 .collect(Collectors.toList());
     }
 
-    @SneakyThrows
     public <T> void fillIdIfNull(T model) {
         if (idGenerator == null || idField == null) {
             return;
         }
         if (this.idValue(model) == null) {
-            Object id = this.idGenerator.generate(this);
-            if (id != null) {
-                if (String.class.isAssignableFrom(idField.propertyType())) {
-                    id = String.valueOf(id);
-                }
-                idField.field().set(model, id);
+            this.fillId(model, this.idGenerator.generate(this));
+        }
+    }
+
+    /**
+     * 为主键为空的模型批量生成主键（一次预留所需数量的主键）
+     */
+    public <T> void fillIdIfNull(List<T> models) {
+        if (idGenerator == null || idField == null) {
+            return;
+        }
+        List<T> emptyIdModels = new ArrayList<>();
+        for (T model : models) {
+            if (this.idValue(model) == null) {
+                emptyIdModels.add(model);
+            }
+        }
+        if (emptyIdModels.isEmpty()) {
+            return;
+        }
+        Object[] ids = this.idGenerator.generate(this, emptyIdModels.size());
+        for (int i = 0; i < ids.length; i++) {
+            this.fillId(emptyIdModels.get(i), ids[i]);
+        }
+    }
+
+    private void fillId(Object model, Object id) {
+        if (id != null) {
+            if (String.class.isAssignableFrom(idField.propertyType())) {
+                id = String.valueOf(id);
             }
+            idField.value(model, id);
         }
     }
 
@@ -105,9 +178,34 @@ public class ModelInfo implements Serializable {
         this.modelName = obtainModelName(modelClass);
         this.fields = obtainFields(modelClass);
         this.idField = obtainIdField(this.fields);
-        this.idGenerator = obtainIdGenerator(this.idField);
+        this.idGenerator = obtainIdGenerator(this.idField == null ?
+                null : this.idField.field().getAnnotation(IdStrategy.class), this.modelName);
         this.autoId = this.idGenerator == null;
+        this.scripts = null;
+        this.initIdField();
+        this.snapshots = this.obtainSnapshots();
+    }
+
+    private ModelInfo(ModelDefinition definition) {
+        this.modelClass = definition.modelClass();
+        this.modelName = definition.modelName();
+        this.fields = definition.fields();
+        String idProperty = definition.idProperty();
+        this.idField = idProperty == null ? null : this.fields.stream()
+                .filter(field -> field.property().equals(idProperty))
+                .findFirst()
+                .orElse(null);
+        this.idGenerator = obtainIdGenerator(definition.idStrategy(), this.modelName);
+        this.autoId = this.idGenerator == null;
+        this.scripts = definition.scripts();
+        this.initIdField();
+        this.snapshots = this.obtainSnapshots();
+    }
+
+    private void initIdField() {
         if (this.idField != null) {
+            Assert.isTrue(this.idGenerator != UuidV7IdGenerator.INSTANCE || UuidV7IdGenerator.supports(this.idField.propertyType()),
+                    String.format("%s 使用 UUID_V7 主键时 id 字段类型只能为 String 或 byte[]", this.modelClass.getName()));
             // 主键字段不可修改
             this.idField.updatable(false);
             // 自增主键不可新增
@@ -117,6 +215,17 @@ public class ModelInfo implements Serializable {
         }
     }
 
+    /**
+     * 跟踪可修改的字段，字段数超过 63 时不跟踪
+     */
+    private ModelSnapshots obtainSnapshots() {
+        if (!this.modelClass.isAnnotationPresent(DirtyTracking.class)) {
+            return null;
+        }
+        List<ModelField> updateFields = this.getUpdateFields();
+        return updateFields.size() > ModelSnapshots.MAX_FIELDS ? null : new ModelSnapshots(updateFields);
+    }
+
     /**
      * 获取模型名，默认为类名转为下划线
      * 当类有 @Table 注解时：
@@ -180,46 +289,56 @@ public class ModelInfo implements Serializable {
     /**
      * 获取表主键策略，默认使用雪花算法
      */
-    private static IdGenerator obtainIdGenerator(ModelField idField) {
-        IdStrategy strategy = idField == null ?
-                null : idField.field().getAnnotation(IdStrategy.class);
+    private static IdGenerator obtainIdGenerator(IdStrategy strategy, String modelName) {
         long beginTime = 0;
+        WorkerIdProvider workerIdProvider = null;
         if (strategy != null) {
             if (strategy.type() == IdStrategyType.AUTO) {
                 return null;
             } else if (strategy.type() == IdStrategyType.UUID) {
                 return UUID_ID_GENERATOR;
+            } else if (strategy.type() == IdStrategyType.UUID_V7) {
+                return UuidV7IdGenerator.INSTANCE;
+            } else if (strategy.type() == IdStrategyType.SEGMENT) {
+                String tag = StringUtils.hasText(strategy.segmentTag()) ? strategy.segmentTag() : modelName;
+                return new SegmentIdGenerator(tag, strategy.segmentStep());
             }
             beginTime = strategy.beginTime();
+            workerIdProvider = obtainWorkerIdProvider(strategy.workerIdProvider());
         }
         // 优先级：系统参数 > 注解值
         String beginTimeParam = System.getProperty("simple.snowflake", "");
         if (!"".equals(beginTimeParam)) {
             beginTime = Long.parseLong(beginTimeParam);
         }
-        if (beginTime <= 0 || beginTime == IdStrategy.SNOWFLAKE_BEGIN_TIME) {
+        if (!SNOWFLAKE_PER_MODEL && workerIdProvider == null
+                && (beginTime <= 0 || beginTime == IdStrategy.SNOWFLAKE_BEGIN_TIME)) {
             return DEFAULT_SNOWFLAKE_ID_GENERATOR;
         } else {
-            return new SnowflakeIdGenerator(beginTime);
+            return new SnowflakeIdGenerator(beginTime <= 0 ? IdStrategy.SNOWFLAKE_BEGIN_TIME : beginTime,
+                    workerIdProvider == null ? Snowflake.defaultWorkerIdProvider() : workerIdProvider);
         }
     }
 
-    private interface IdGenerator {
-
-        /**
-         * 生成主键值
-         *
-         * @param info 表信息
-         * @return 主键值
-         */
-        Object generate(ModelInfo info);
-
+    /**
+     * 注解指定的机器标识提供者，未指定时为 null
+     */
+    private static WorkerIdProvider obtainWorkerIdProvider(Class<? extends WorkerIdProvider> providerClass) {
+        if (providerClass == null || providerClass == WorkerIdProvider.class) {
+            return null;
+        }
+        try {
+            return providerClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("无法创建机器标识提供者 %s", providerClass.getName()), e);
+        }
     }
 
     private static final IdGenerator UUID_ID_GENERATOR = info -> UUID.randomUUID().toString().replace("-", "");
-    private static final IdGenerator DEFAULT_SNOWFLAKE_ID_GENERATOR = new SnowflakeIdGenerator(IdStrategy.SNOWFLAKE_BEGIN_TIME);
+    private static final IdGenerator DEFAULT_SNOWFLAKE_ID_GENERATOR =
+            new SnowflakeIdGenerator(IdStrategy.SNOWFLAKE_BEGIN_TIME, Snowflake.defaultWorkerIdProvider());
 
-    private static class SnowflakeIdGenerator implements IdGenerator {
+    private static class SnowflakeIdGenerator implements IdGenerator, DataSourceAware {
         private final Snowflake snowflake;
 
         @Override
@@ -227,8 +346,25 @@ public class ModelInfo implements Serializable {
             return snowflake.nextId();
         }
 
-        public SnowflakeIdGenerator(long beginTime) {
-            this.snowflake = new Snowflake(beginTime);
+        @Override
+        public Object[] generate(ModelInfo info, int count) {
+            long[] ids = snowflake.nextIds(count);
+            Object[] result = new Object[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = ids[i];
+            }
+            return result;
+        }
+
+        @Override
+        public void dataSource(Supplier<DataSource> dataSource) {
+            if (snowflake.workerIdProvider() instanceof DataSourceAware) {
+                ((DataSourceAware) snowflake.workerIdProvider()).dataSource(dataSource);
+            }
+        }
+
+        public SnowflakeIdGenerator(long beginTime, WorkerIdProvider workerIdProvider) {
+            this.snowflake = new Snowflake(beginTime, workerIdProvider);
         }
     }
 
@@ -0,0 +1,157 @@
+package com.loyayz.simple.helper;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模型对象的字段值快照（脏字段跟踪）
+ * <p>
+ * 按对象标识（==）保存查询时的可修改字段值，只保存模型对象的弱引用，对象被回收后快照随之清除。
+ * 数组和 Date 保存副本，原地修改也能识别。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class ModelSnapshots {
+    /**
+     * 支持的最多字段数（变更字段以 long 掩码表示，最高位不用，避免与 {@link #NO_SNAPSHOT} 冲突）
+     */
+    static final int MAX_FIELDS = Long.SIZE - 1;
+    /**
+     * 没有快照时的变更掩码
+     */
+    public static final long NO_SNAPSHOT = -1L;
+
+    private final List<ModelField> fields;
+    private final Map<IdentityKey, Object[]> snapshots = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    ModelSnapshots(List<ModelField> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * 跟踪的字段列表（变更掩码第 i 位对应 fields().get(i)）
+     */
+    public List<ModelField> fields() {
+        return this.fields;
+    }
+
+    /**
+     * 记录快照，已有快照时不覆盖
+     * MyBatis 一级缓存命中时返回的是同一个对象，覆盖会丢失之前的修改
+     */
+    public void capture(Object model) {
+        if (model == null) {
+            return;
+        }
+        this.expunge();
+        IdentityKey key = new IdentityKey(model, this.queue);
+        if (!this.snapshots.containsKey(key)) {
+            this.snapshots.put(key, this.values(model));
+        }
+    }
+
+    public void capture(List<?> models) {
+        for (Object model : models) {
+            this.capture(model);
+        }
+    }
+
+    /**
+     * 刷新快照（修改成功后调用）
+     */
+    public void refresh(Object model) {
+        this.expunge();
+        this.snapshots.put(new IdentityKey(model, this.queue), this.values(model));
+    }
+
+    /**
+     * 与快照不同的字段掩码
+     *
+     * @return 第 i 位表示 fields().get(i) 已修改；没有快照时为 {@link #NO_SNAPSHOT}
+     */
+    public long changedMask(Object model) {
+        Object[] values = this.snapshots.get(new IdentityKey(model));
+        if (values == null) {
+            return NO_SNAPSHOT;
+        }
+        long mask = 0L;
+        for (int i = 0; i < values.length; i++) {
+            if (!Objects.deepEquals(values[i], this.fields.get(i).value(model))) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    public void remove(Object model) {
+        this.snapshots.remove(new IdentityKey(model));
+    }
+
+    private Object[] values(Object model) {
+        Object[] values = new Object[this.fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = copy(this.fields.get(i).value(model));
+        }
+        return values;
+    }
+
+    private void expunge() {
+        Object key;
+        while ((key = this.queue.poll()) != null) {
+            this.snapshots.remove(key);
+        }
+    }
+
+    /**
+     * 数组和 Date 的副本，其他值原样返回
+     */
+    static Object copy(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        return value;
+    }
+
+    /**
+     * 按对象标识比较的弱引用
+     */
+    private static final class IdentityKey extends WeakReference<Object> {
+        private final int hash;
+
+        private IdentityKey(Object referent) {
+            super(referent);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        private IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdentityKey)) {
+                return false;
+            }
+            Object referent = this.get();
+            return referent != null && referent == ((IdentityKey) obj).get();
+        }
+    }
+
+}
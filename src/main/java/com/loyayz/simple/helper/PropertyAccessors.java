@@ -0,0 +1,208 @@
+package com.loyayz.simple.helper;
+
+import lombok.SneakyThrows;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 生成属性的读写函数和模型的构造函数
+ * <p>
+ * 优先通过 LambdaMetafactory 把 getter/setter 方法生成为函数（可被 JIT 内联），
+ * 不满足条件时（非 public、类加载器不可见、无 getter/setter 等）退化为字段的 MethodHandle，
+ * 最后退化为反射。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+final class PropertyAccessors {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    static Function<Object, Object> getter(Field field) {
+        Method method = findGetter(field);
+        if (method != null && lambdaAccessible(method)) {
+            try {
+                return lambdaGetter(method);
+            } catch (Throwable ignore) {
+            }
+        }
+        try {
+            MethodHandle handle = LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+            return model -> invokeGetter(handle, model);
+        } catch (Throwable ignore) {
+        }
+        return model -> reflectGet(field, model);
+    }
+
+    static BiConsumer<Object, Object> setter(Field field) {
+        Method method = findSetter(field);
+        if (method != null && lambdaAccessible(method)) {
+            try {
+                return lambdaSetter(method);
+            } catch (Throwable ignore) {
+            }
+        }
+        if (!Modifier.isFinal(field.getModifiers())) {
+            try {
+                MethodHandle handle = LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+                return (model, value) -> invokeSetter(handle, model, value);
+            } catch (Throwable ignore) {
+            }
+        }
+        return (model, value) -> reflectSet(field, model, value);
+    }
+
+    /**
+     * 无参构造函数
+     */
+    static Supplier<Object> constructor(Class<?> clazz) {
+        Constructor<?> constructor;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return () -> {
+                throw new IllegalStateException(String.format("%s 缺少无参构造方法", clazz.getName()));
+            };
+        }
+        if (Modifier.isPublic(constructor.getModifiers()) && lambdaAccessible(clazz)) {
+            try {
+                return lambdaConstructor(constructor);
+            } catch (Throwable ignore) {
+            }
+        }
+        try {
+            constructor.setAccessible(true);
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+            return () -> invokeConstructor(handle);
+        } catch (Throwable ignore) {
+        }
+        return () -> reflectNew(constructor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> lambdaConstructor(Constructor<?> constructor) throws Throwable {
+        MethodHandle impl = LOOKUP.unreflectConstructor(constructor);
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP,
+                "get",
+                MethodType.methodType(Supplier.class),
+                CONSTRUCTOR_TYPE,
+                impl,
+                MethodType.methodType(constructor.getDeclaringClass()));
+        return (Supplier<Object>) site.getTarget().invoke();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> lambdaGetter(Method method) throws Throwable {
+        MethodHandle impl = LOOKUP.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP,
+                "apply",
+                MethodType.methodType(Function.class),
+                GETTER_TYPE,
+                impl,
+                MethodType.methodType(wrap(method.getReturnType()), method.getDeclaringClass()));
+        return (Function<Object, Object>) site.getTarget().invoke();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> lambdaSetter(Method method) throws Throwable {
+        MethodHandle impl = LOOKUP.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(LOOKUP,
+                "accept",
+                MethodType.methodType(BiConsumer.class),
+                SETTER_TYPE,
+                impl,
+                MethodType.methodType(void.class, method.getDeclaringClass(), wrap(method.getParameterTypes()[0])));
+        return (BiConsumer<Object, Object>) site.getTarget().invoke();
+    }
+
+    /**
+     * 生成的函数类位于本类所在的包和类加载器中，
+     * 因此 getter/setter 及其所在类必须为 public，且能被本类的类加载器加载
+     */
+    private static boolean lambdaAccessible(Method method) {
+        return Modifier.isPublic(method.getModifiers()) && lambdaAccessible(method.getDeclaringClass());
+    }
+
+    private static boolean lambdaAccessible(Class<?> declaringClass) {
+        for (Class<?> clazz = declaringClass; clazz != null; clazz = clazz.getEnclosingClass()) {
+            if (!Modifier.isPublic(clazz.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return Class.forName(declaringClass.getName(), false, PropertyAccessors.class.getClassLoader()) == declaringClass;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static Method findGetter(Field field) {
+        String suffix = capitalize(field.getName());
+        Class<?> type = field.getType();
+        Method method = findMethod(field.getDeclaringClass(), "get" + suffix);
+        if (method == null && type == boolean.class) {
+            method = findMethod(field.getDeclaringClass(), "is" + suffix);
+        }
+        return method != null && method.getReturnType() == type ? method : null;
+    }
+
+    private static Method findSetter(Field field) {
+        return findMethod(field.getDeclaringClass(), "set" + capitalize(field.getName()), field.getType());
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = clazz.getMethod(name, parameterTypes);
+            return Modifier.isStatic(method.getModifiers()) ? null : method;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    @SneakyThrows
+    private static Object invokeGetter(MethodHandle handle, Object model) {
+        return handle.invokeExact(model);
+    }
+
+    @SneakyThrows
+    private static void invokeSetter(MethodHandle handle, Object model, Object value) {
+        handle.invokeExact(model, value);
+    }
+
+    @SneakyThrows
+    private static Object invokeConstructor(MethodHandle handle) {
+        return handle.invokeExact();
+    }
+
+    @SneakyThrows
+    private static Object reflectNew(Constructor<?> constructor) {
+        return constructor.newInstance();
+    }
+
+    @SneakyThrows
+    private static Object reflectGet(Field field, Object model) {
+        return field.get(model);
+    }
+
+    @SneakyThrows
+    private static void reflectSet(Field field, Object model, Object value) {
+        field.set(model, value);
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.loyayz.simple.helper;
+
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 号段主键生成器
+ * <p>
+ * 从号段表一次申请 step 个主键（max_id 增加 step），在内存中依次发放。
+ * 当前号段发放超过 10% 时异步预取下一个号段（双缓冲），号段用尽时直接切换，发放主键无需访问数据库。
+ * 号段使用独立的数据库连接申请并立即提交，不受业务事务回滚影响。
+ * <p>
+ * 号段表（表名可通过系统参数修改，例 -Dsimple.segmentTable=simple_id_segment）：
+ * <pre>
+ * CREATE TABLE simple_id_segment (
+ *     tag    VARCHAR(128) NOT NULL PRIMARY KEY,
+ *     max_id BIGINT       NOT NULL
+ * );
+ * </pre>
+ * tag 不存在时自动插入（max_id 从 0 开始）。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public class SegmentIdGenerator implements IdGenerator, DataSourceAware {
+    private static final String TABLE = System.getProperty("simple.segmentTable", "simple_id_segment");
+    /**
+     * 当前号段发放超过该比例时预取下一个号段
+     */
+    private static final double PREFETCH_RATIO = 0.1;
+    private static final ExecutorService LOADER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "simple-segment-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String tag;
+    private final int step;
+    private volatile Supplier<DataSource> dataSource;
+    private volatile Segment current;
+    private Future<Segment> next;
+
+    public SegmentIdGenerator(String tag, int step) {
+        Assert.isTrue(step > 0, String.format("号段 %s 的步长必须大于 0", tag));
+        this.tag = tag;
+        this.step = step;
+    }
+
+    @Override
+    public void dataSource(Supplier<DataSource> dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Object generate(ModelInfo info) {
+        return this.nextId();
+    }
+
+    @Override
+    public Object[] generate(ModelInfo info, int count) {
+        Object[] result = new Object[count];
+        int filled = 0;
+        while (filled < count) {
+            Segment segment = this.segment();
+            int size = count - filled;
+            long first = segment.cursor.getAndAdd(size);
+            long last = Math.min(first + size - 1, segment.max);
+            for (long id = first; id <= last; id++) {
+                result[filled++] = id;
+            }
+            this.afterTake(segment, last);
+        }
+        return result;
+    }
+
+    public long nextId() {
+        for (; ; ) {
+            Segment segment = this.segment();
+            long id = segment.cursor.getAndIncrement();
+            if (id <= segment.max) {
+                this.afterTake(segment, id);
+                return id;
+            }
+            this.afterTake(segment, id);
+        }
+    }
+
+    private Segment segment() {
+        Segment segment = this.current;
+        if (segment == null) {
+            synchronized (this) {
+                segment = this.current;
+                if (segment == null) {
+                    segment = this.current = this.load();
+                }
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * 发放超过 10% 时预取下一个号段，用尽时切换到下一个号段
+     *
+     * @param taken 本次发放的最后一个主键
+     */
+    private void afterTake(Segment segment, long taken) {
+        if (taken >= segment.max) {
+            synchronized (this) {
+                if (this.current == segment) {
+                    this.current = this.takeNext();
+                }
+            }
+        } else if (taken >= segment.prefetchAt && !segment.prefetched) {
+            synchronized (this) {
+                if (!segment.prefetched && this.current == segment) {
+                    segment.prefetched = true;
+                    this.next = LOADER.submit(this::load);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取预取的号段，预取失败或未预取时同步申请
+     */
+    private Segment takeNext() {
+        Future<Segment> next = this.next;
+        this.next = null;
+        if (next != null) {
+            try {
+                return next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignore) {
+            }
+        }
+        return this.load();
+    }
+
+    private Segment load() {
+        Supplier<DataSource> dataSource = this.dataSource;
+        Assert.notNull(dataSource, String.format("号段 %s 未配置数据源", tag));
+        try (Connection connection = dataSource.get().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                long maxId = this.allocate(connection);
+                connection.commit();
+                return new Segment(maxId - step + 1, maxId, step);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(String.format("号段 %s 申请失败", tag), e);
+        }
+    }
+
+    private long allocate(Connection connection) throws SQLException {
+        for (int i = 0; i < 2; i++) {
+            if (this.update(connection) == 1) {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        String.format("SELECT max_id FROM %s WHERE tag = ?", TABLE))) {
+                    ps.setString(1, tag);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        return rs.getLong(1);
+                    }
+                }
+            }
+            this.insert(connection);
+        }
+        throw new IllegalStateException(String.format("号段 %s 申请失败：%s 中不存在该 tag", tag, TABLE));
+    }
+
+    private int update(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                String.format("UPDATE %s SET max_id = max_id + ? WHERE tag = ?", TABLE))) {
+            ps.setLong(1, step);
+            ps.setString(2, tag);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 插入 tag，并发插入导致主键冲突时忽略
+     */
+    private void insert(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                String.format("INSERT INTO %s (tag, max_id) VALUES (?, 0)", TABLE))) {
+            ps.setString(1, tag);
+            ps.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+        }
+    }
+
+    /**
+     * 号段 [min, max]
+     */
+    private static final class Segment {
+        private final AtomicLong cursor;
+        private final long max;
+        private final long prefetchAt;
+        private volatile boolean prefetched;
+
+        private Segment(long min, long max, int step) {
+            this.cursor = new AtomicLong(min);
+            this.max = max;
+            this.prefetchAt = min + (long) (step * PREFETCH_RATIO);
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 分布式高效有序ID生成黑科技(sequence)
@@ -11,7 +12,7 @@ import java.util.concurrent.ThreadLocalRandom;
  *
  * @author loyayz (loyayz@foxmail.com)
  */
-public class Snowflake  {
+public class Snowflake {
 
     /**
      * 时间起始标记点，作为基准（一旦确定不能变动）
@@ -36,25 +37,42 @@ public class Snowflake  {
     private final long timestampLeftShift = sequenceBits + workerIdBits + datacenterIdBits;
     private final long sequenceMask = ~(-1L << sequenceBits);
 
-    private final long workerId;
-
-    /**
-     * 数据标识 ID 部分
-     */
-    private final long datacenterId;
     /**
-     * 并发控制
+     * 机器标识（数据中心标识 << 5 | 机器标识）
      */
-    private long sequence = 0L;
+    private final WorkerIdProvider workerIdProvider;
     /**
-     * 上次生产 ID 时间戳
+     * 并发控制：(时间戳 - twepoch) << sequenceBits | 序列号
+     * 序列号用尽或时钟回拨时直接累加，溢出的序列号进位到时间戳（逻辑时钟），不等待、不抛异常
      */
-    private long lastTimestamp = -1L;
+    private final AtomicLong state = new AtomicLong(-1L);
 
     public Snowflake(long twepoch) {
-        this.datacenterId = getDatacenterId(maxDatacenterId);
-        this.workerId = getMaxWorkerId(datacenterId, maxWorkerId);
+        this(twepoch, defaultWorkerIdProvider());
+    }
+
+    /**
+     * 构造时不获取机器标识，首次生成 ID 时才调用 workerIdProvider
+     */
+    public Snowflake(long twepoch, WorkerIdProvider workerIdProvider) {
         this.twepoch = twepoch;
+        this.workerIdProvider = workerIdProvider;
+    }
+
+    public WorkerIdProvider workerIdProvider() {
+        return this.workerIdProvider;
+    }
+
+    /**
+     * 默认的机器标识提供者（所有使用默认配置的 Snowflake 共用），由系统参数 simple.workerId 决定：
+     * 未设置时根据 MAC 地址和进程号计算；为 lease 时通过数据库租约分配；为数字时直接使用该值
+     *
+     * @see MacWorkerIdProvider
+     * @see LeaseWorkerIdProvider
+     * @see StaticWorkerIdProvider
+     */
+    public static WorkerIdProvider defaultWorkerIdProvider() {
+        return DefaultWorkerIdProvider.INSTANCE;
     }
 
     /**
@@ -100,60 +118,91 @@ public class Snowflake  {
 
     /**
      * 获取下一个 ID
+     * 逻辑时钟领先于系统时钟时（同一毫秒序列号用尽、时钟回拨），沿用逻辑时钟，直到系统时钟追上
      *
      * @return 下一个 ID
      */
-    public synchronized long nextId() {
-        long timestamp = timeGen();
-        //闰秒
-        if (timestamp < lastTimestamp) {
-            long offset = lastTimestamp - timestamp;
-            if (offset <= 5) {
-                try {
-                    wait(offset << 1);
-                    timestamp = timeGen();
-                    if (timestamp < lastTimestamp) {
-                        throw new RuntimeException(String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", offset));
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+    public long nextId() {
+        long current, next;
+        do {
+            current = state.get();
+            long now = (timeGen() - twepoch) << sequenceBits;
+            if (now > current) {
+                // 新的毫秒，序列号置为 1 - 2 随机数
+                next = now | ThreadLocalRandom.current().nextLong(1, 3);
             } else {
-                throw new RuntimeException(String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", offset));
+                next = current + 1;
             }
-        }
+        } while (!state.compareAndSet(current, next));
+
+        return this.toId(next, this.workerBits());
+    }
 
-        if (lastTimestamp == timestamp) {
-            // 相同毫秒内，序列号自增
-            sequence = (sequence + 1) & sequenceMask;
-            if (sequence == 0) {
-                // 同一毫秒的序列数已经达到最大
-                timestamp = tilNextMillis(lastTimestamp);
+    /**
+     * 一次预留连续的 count 个 ID
+     * 与逐个调用 {@link #nextId()} 生成的 ID 规则一致，只需一次 CAS
+     *
+     * @param count 数量
+     * @return ID（递增）
+     */
+    public long[] nextIds(int count) {
+        long[] result = new long[count];
+        if (count <= 0) {
+            return result;
+        }
+        long current, first;
+        do {
+            current = state.get();
+            long now = (timeGen() - twepoch) << sequenceBits;
+            if (now > current) {
+                first = now | ThreadLocalRandom.current().nextLong(1, 3);
+            } else {
+                first = current + 1;
             }
-        } else {
-            // 不同毫秒内，序列号置为 1 - 3 随机数
-            sequence = ThreadLocalRandom.current().nextLong(1, 3);
+        } while (!state.compareAndSet(current, first + count - 1));
+        long workerBits = this.workerBits();
+        for (int i = 0; i < count; i++) {
+            result[i] = this.toId(first + i, workerBits);
         }
+        return result;
+    }
 
-        lastTimestamp = timestamp;
-
-        // 时间戳部分 | 数据中心部分 | 机器标识部分 | 序列号部分
-        return ((timestamp - twepoch) << timestampLeftShift)
-                | (datacenterId << datacenterIdShift)
-                | (workerId << workerIdShift)
-                | sequence;
+    /**
+     * 时间戳部分 | 数据中心部分 | 机器标识部分 | 序列号部分
+     */
+    private long toId(long state, long workerBits) {
+        return ((state >>> sequenceBits) << timestampLeftShift)
+                | workerBits
+                | (state & sequenceMask);
     }
 
-    protected long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
-        }
-        return timestamp;
+    /**
+     * 数据中心部分 | 机器标识部分
+     */
+    private long workerBits() {
+        long id = this.workerIdProvider.workerId();
+        long datacenterId = (id >> workerIdBits) & maxDatacenterId;
+        long workerId = id & maxWorkerId;
+        return (datacenterId << datacenterIdShift) | (workerId << workerIdShift);
     }
 
     protected long timeGen() {
         return System.currentTimeMillis();
     }
 
+    private static final class DefaultWorkerIdProvider {
+        private static final WorkerIdProvider INSTANCE;
+
+        static {
+            String workerId = System.getProperty("simple.workerId", "");
+            if ("".equals(workerId)) {
+                INSTANCE = new MacWorkerIdProvider();
+            } else if ("lease".equalsIgnoreCase(workerId)) {
+                INSTANCE = new LeaseWorkerIdProvider();
+            } else {
+                INSTANCE = new StaticWorkerIdProvider();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,26 @@
+package com.loyayz.simple.helper;
+
+import org.springframework.util.Assert;
+
+/**
+ * 通过系统参数指定机器标识，例 -Dsimple.workerId=12
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public class StaticWorkerIdProvider implements WorkerIdProvider {
+    private volatile long workerId = -1;
+
+    @Override
+    public long workerId() {
+        long result = this.workerId;
+        if (result < 0) {
+            String value = System.getProperty("simple.workerId", "");
+            Assert.isTrue(value.matches("\\d+"), "未通过系统参数 simple.workerId 指定机器标识");
+            result = Long.parseLong(value);
+            Assert.isTrue(result <= MAX_WORKER_ID, String.format("机器标识 %s 超出范围 0 - %s", result, MAX_WORKER_ID));
+            this.workerId = result;
+        }
+        return result;
+    }
+
+}
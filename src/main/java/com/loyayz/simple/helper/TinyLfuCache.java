@@ -0,0 +1,382 @@
+package com.loyayz.simple.helper;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * 按访问频率淘汰的有界缓存（W-TinyLFU）
+ * <p>
+ * 新记录先进入窗口区（LRU，约 1% 容量），从窗口区淘汰后进入主区的试用段；
+ * 主区满时比较候选记录与试用段最久未访问记录的访问频率（4 位 Count-Min Sketch 估算，定期减半），保留频率高的。
+ * 试用段中再次访问的记录晋升到保护段（约主区的 80%）。偶发的大量一次性访问不会挤掉热点记录。
+ * <p>
+ * 读操作无锁（ConcurrentHashMap），访问顺序的调整在锁空闲时进行，竞争时跳过（不影响正确性）；写操作加锁。
+ * 支持写入后过期（ttl）和命中率统计。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class TinyLfuCache<K, V> {
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final int maxWindow;
+    private final int maxProtected;
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Deque<K, V> window = new Deque<>();
+    private final Deque<K, V> probation = new Deque<>();
+    private final Deque<K, V> protect = new Deque<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maximumSize 最多缓存的记录数
+     * @param ttlMillis   写入后的过期时间（毫秒），小于等于 0 表示不过期
+     */
+    public TinyLfuCache(int maximumSize, long ttlMillis) {
+        Assert.isTrue(maximumSize > 0, "maximumSize 必须大于 0");
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttlMillis <= 0 ? 0 : ttlMillis * 1_000_000L;
+        this.maxWindow = Math.max(1, maximumSize / 100);
+        this.maxProtected = (int) ((maximumSize - this.maxWindow) * 0.8);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * @return 值，不存在或已过期时为 null
+     */
+    public V get(K key) {
+        return this.get(key, null);
+    }
+
+    /**
+     * @param valid 值是否仍有效，无效时移除并计为未命中
+     * @return 值，不存在、已过期或无效时为 null
+     */
+    public V get(K key, Predicate<? super V> valid) {
+        Node<K, V> node = this.data.get(key);
+        if (node == null) {
+            this.misses.increment();
+            return null;
+        }
+        if (node.expired(System.nanoTime()) || (valid != null && !valid.test(node.value))) {
+            this.remove(key, node);
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        if (this.lock.tryLock()) {
+            try {
+                this.sketch.increment(key.hashCode());
+                // 读到节点后可能已被并发移除或清空，只调整仍在缓存中的节点
+                if (node.queue >= 0 && this.data.get(key) == node) {
+                    this.onAccess(node);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    public void put(K key, V value) {
+        this.putNode(key, value, this.ttlNanos == 0 ? 0 : System.nanoTime() + this.ttlNanos);
+    }
+
+    /**
+     * @param ttlMillis 本条记录的过期时间（毫秒），小于等于 0 时使用缓存的过期时间
+     */
+    public void put(K key, V value, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            this.put(key, value);
+            return;
+        }
+        long ttlNanos = ttlMillis * 1_000_000L;
+        this.putNode(key, value, System.nanoTime() + (this.ttlNanos == 0 ? ttlNanos : Math.min(ttlNanos, this.ttlNanos)));
+    }
+
+    private void putNode(K key, V value, long expireAt) {
+        Node<K, V> node = new Node<>(key, value, expireAt);
+        this.lock.lock();
+        try {
+            this.sketch.increment(key.hashCode());
+            Node<K, V> old = this.data.put(key, node);
+            if (old != null) {
+                this.unlink(old);
+            }
+            node.queue = WINDOW;
+            this.window.addLast(node);
+            this.evictIfNeeded();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        Node<K, V> node = this.data.get(key);
+        if (node != null) {
+            this.remove(key, node);
+        }
+    }
+
+    public void clear() {
+        this.lock.lock();
+        try {
+            this.data.clear();
+            // 断开所有节点，避免并发读到的旧节点被重新链入队列
+            this.window.clear();
+            this.probation.clear();
+            this.protect.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int size() {
+        return this.data.size();
+    }
+
+    public Stats stats() {
+        return new Stats(this.hits.sum(), this.misses.sum(), this.evictions.sum(), this.data.size());
+    }
+
+    private void remove(K key, Node<K, V> node) {
+        this.lock.lock();
+        try {
+            if (this.data.remove(key, node)) {
+                this.unlink(node);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == WINDOW) {
+            this.window.moveToLast(node);
+        } else if (node.queue == PROBATION) {
+            this.probation.remove(node);
+            node.queue = PROTECTED;
+            this.protect.addLast(node);
+            if (this.protect.size > this.maxProtected) {
+                Node<K, V> demoted = this.protect.pollFirst();
+                demoted.queue = PROBATION;
+                this.probation.addLast(demoted);
+            }
+        } else {
+            this.protect.moveToLast(node);
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (this.window.size > this.maxWindow) {
+            Node<K, V> candidate = this.window.pollFirst();
+            candidate.queue = PROBATION;
+            this.probation.addLast(candidate);
+        }
+        while (this.data.size() > this.maximumSize) {
+            Node<K, V> victim = this.probation.first != null ? this.probation.first :
+                    this.protect.first != null ? this.protect.first : this.window.first;
+            Node<K, V> candidate = this.probation.last;
+            Node<K, V> evict = victim;
+            if (candidate != null && candidate != victim
+                    && this.sketch.frequency(candidate.key.hashCode()) <= this.sketch.frequency(victim.key.hashCode())) {
+                evict = candidate;
+            }
+            this.data.remove(evict.key, evict);
+            this.unlink(evict);
+            this.evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.queue == WINDOW) {
+            this.window.remove(node);
+        } else if (node.queue == PROBATION) {
+            this.probation.remove(node);
+        } else if (node.queue == PROTECTED) {
+            this.protect.remove(node);
+        }
+        node.queue = -1;
+    }
+
+    /**
+     * 统计信息
+     */
+    @Getter
+    @Accessors(fluent = true)
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final int size;
+
+        private Stats(long hitCount, long missCount, long evictionCount, int size) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.size = size;
+        }
+
+        public double hitRate() {
+            long total = this.hitCount + this.missCount;
+            return total == 0 ? 1.0 : (double) this.hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%s misses=%s hitRate=%.4f evictions=%s size=%s",
+                    hitCount, missCount, this.hitRate(), evictionCount, size);
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        /**
+         * 过期时间（System.nanoTime），0 表示不过期
+         */
+        private final long expireAt;
+        private int queue = -1;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean expired(long now) {
+            return this.expireAt != 0 && now - this.expireAt >= 0;
+        }
+    }
+
+    /**
+     * 双向链表（队首为最久未访问）
+     */
+    private static final class Deque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+        private int size;
+
+        private void addLast(Node<K, V> node) {
+            node.prev = this.last;
+            node.next = null;
+            if (this.last == null) {
+                this.first = node;
+            } else {
+                this.last.next = node;
+            }
+            this.last = node;
+            this.size++;
+        }
+
+        private Node<K, V> pollFirst() {
+            Node<K, V> node = this.first;
+            if (node != null) {
+                this.remove(node);
+            }
+            return node;
+        }
+
+        private void moveToLast(Node<K, V> node) {
+            if (node != this.last) {
+                this.remove(node);
+                this.addLast(node);
+            }
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                this.first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                this.last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = node.next = null;
+            this.size--;
+        }
+
+        private void clear() {
+            for (Node<K, V> node = this.first; node != null; ) {
+                Node<K, V> next = node.next;
+                node.queue = -1;
+                node.prev = node.next = null;
+                node = next;
+            }
+            this.first = this.last = null;
+            this.size = 0;
+        }
+    }
+
+    /**
+     * 4 位 Count-Min Sketch：每个 long 存 16 个计数器，每个键对应 4 个计数器，频率取最小值
+     * 累计次数达到容量的 10 倍时所有计数器减半，使频率随时间衰减
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(maximumSize, 16) - 1) << 1;
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        private int frequency(int hashCode) {
+            int result = 15;
+            for (int i = 0; i < 4; i++) {
+                long hash = this.hash(hashCode, i);
+                int shift = (int) (hash >>> 60) << 2;
+                result = Math.min(result, (int) ((this.table[(int) hash & this.tableMask] >>> shift) & 15L));
+            }
+            return result;
+        }
+
+        private void increment(int hashCode) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                long hash = this.hash(hashCode, i);
+                int index = (int) hash & this.tableMask;
+                int shift = (int) (hash >>> 60) << 2;
+                if (((this.table[index] >>> shift) & 15L) != 15L) {
+                    this.table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++this.additions >= this.sampleSize) {
+                for (int i = 0; i < this.table.length; i++) {
+                    this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+                }
+                this.additions /= 2;
+            }
+        }
+
+        private long hash(int hashCode, int i) {
+            long hash = (hashCode + SEEDS[i]) * SEEDS[i];
+            return hash ^ (hash >>> 29);
+        }
+    }
+
+}
@@ -4,11 +4,12 @@ import com.loyayz.simple.Sorter;
 
 import java.io.Serializable;
 import java.lang.invoke.SerializedLambda;
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -19,15 +20,35 @@ import static java.util.stream.Collectors.toMap;
  * @author loyayz (loyayz@foxmail.com)
  */
 public final class Utils {
-    private static final List<String> PROXY_CLASSES = Arrays.asList(
+    private static final Set<String> PROXY_CLASSES = new HashSet<>(Arrays.asList(
             "net.sf.cglib.proxy.Factory",
             "org.springframework.cglib.proxy.Factory",
             "javassist.util.proxy.ProxyObject",
-            "org.apache.ibatis.javassist.util.proxy.ProxyObject");
-    private static final Map<Class<?>, WeakReference<SerializedLambda>> LAMBDA_CACHE = new ConcurrentHashMap<>();
+            "org.apache.ibatis.javassist.util.proxy.ProxyObject"));
+    /**
+     * 类 -> 模型类（代理类解析一次后缓存）
+     * 使用 ClassValue 挂在类自身上，不阻止类加载器卸载
+     */
+    private static final ClassValue<Class<?>> TARGET_CLASS = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            return resolveTargetClass(type);
+        }
+    };
+    /**
+     * 表达式类 -> 属性名（数组只存一个元素，首次使用时解析）
+     */
+    private static final ClassValue<String[]> LAMBDA_PROPERTY_CACHE = new ClassValue<String[]>() {
+        @Override
+        protected String[] computeValue(Class<?> type) {
+            return new String[1];
+        }
+    };
 
     public static boolean jpaPresent;
     public static boolean pageHelperPresent;
+    public static boolean springTxPresent;
+    public static boolean mybatisSpringPresent;
 
     static {
         try {
@@ -42,6 +63,35 @@ public final class Utils {
         } catch (Throwable e) {
             pageHelperPresent = false;
         }
+        try {
+            Class.forName("org.springframework.transaction.support.TransactionSynchronizationManager");
+            springTxPresent = true;
+        } catch (Throwable e) {
+            springTxPresent = false;
+        }
+        try {
+            Class.forName("org.mybatis.spring.SqlSessionTemplate");
+            mybatisSpringPresent = true;
+        } catch (Throwable e) {
+            mybatisSpringPresent = false;
+        }
+    }
+
+    /**
+     * 主键转为可比较的键（缓存、标识映射使用）
+     * byte[] 按内容比较，整数统一为 Long（1 与 1L 相同）
+     */
+    public static Object idKey(Object id) {
+        if (id instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) id);
+        } else if (id instanceof Integer || id instanceof Long || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        } else if (id instanceof BigInteger && ((BigInteger) id).bitLength() < Long.SIZE) {
+            return ((BigInteger) id).longValue();
+        } else if (id instanceof BigDecimal) {
+            return ((BigDecimal) id).stripTrailingZeros();
+        }
+        return id;
     }
 
     /**
@@ -51,6 +101,10 @@ public final class Utils {
      * @return 如果是代理类，返回父类，否则返回自身
      */
     public static Class<?> getTargetClass(Class<?> clazz) {
+        return TARGET_CLASS.get(clazz);
+    }
+
+    private static Class<?> resolveTargetClass(Class<?> clazz) {
         boolean isProxy = false;
         for (Class<?> cls : clazz.getInterfaces()) {
             if (PROXY_CLASSES.contains(cls.getName())) {
@@ -108,16 +162,37 @@ public final class Utils {
 
     /**
      * 获取表达式方法的属性名
+     * 按表达式类缓存，同一个表达式只解析一次
      */
     public static String getLambdaProperty(Sorter sorter) {
-        Class<?> funcClass = sorter.func().getClass();
-        SerializedLambda lambda = Optional.ofNullable(LAMBDA_CACHE.get(funcClass))
-                .map(WeakReference::get)
-                .orElseGet(() -> {
-                    SerializedLambda temp = sorter.funcToSerializedLambda();
-                    LAMBDA_CACHE.put(funcClass, new WeakReference<>(temp));
-                    return temp;
-                });
+        return getLambdaProperty(sorter.func());
+    }
+
+    /**
+     * 方法引用对应的属性名，例 User::getName -> name
+     *
+     * @param func 可序列化的方法引用（{@link Sorter.SerializedGet}、{@link Sorter.SerializedSet}）
+     */
+    public static String getLambdaProperty(Serializable func) {
+        String[] cache = LAMBDA_PROPERTY_CACHE.get(func.getClass());
+        String property = cache[0];
+        if (property == null) {
+            property = cache[0] = resolveLambdaProperty(toSerializedLambda(func));
+        }
+        return property;
+    }
+
+    static SerializedLambda toSerializedLambda(Serializable func) {
+        try {
+            Method method = func.getClass().getDeclaredMethod("writeReplace");
+            method.setAccessible(Boolean.TRUE);
+            return (SerializedLambda) method.invoke(func);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String resolveLambdaProperty(SerializedLambda lambda) {
         String result = lambda.getImplMethodName();
         if (result.startsWith("is")) {
             result = result.substring(2);
@@ -0,0 +1,96 @@
+package com.loyayz.simple.helper;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按时间有序的 UUID（version 7）主键生成器
+ * <p>
+ * 高 48 位为毫秒时间戳，随后 12 位（rand_a）为毫秒内计数器（每毫秒从随机值开始，溢出时进位到时间戳），
+ * 低 62 位（rand_b）取自 ThreadLocalRandom。同一 JVM 内生成的值严格递增，新记录总是追加到索引末尾。
+ * <p>
+ * 主键类型：
+ * String 为 32 位小写十六进制（无 -），byte[] 为 16 字节二进制。
+ * 不支持 java.util.UUID：MyBatis 没有 UUID 的默认 TypeHandler，各数据库驱动对 UUID 参数的支持也不一致
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+final class UuidV7IdGenerator implements IdGenerator {
+    static final UuidV7IdGenerator INSTANCE = new UuidV7IdGenerator();
+
+    private static final int COUNTER_BITS = 12;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    /**
+     * 毫秒时间戳 << 12 | 计数器
+     */
+    private final AtomicLong state = new AtomicLong(-1L);
+
+    /**
+     * 是否支持该主键类型
+     */
+    static boolean supports(Class<?> idType) {
+        return idType == String.class || idType == byte[].class;
+    }
+
+    @Override
+    public Object generate(ModelInfo info) {
+        return this.convert(this.reserve(1), ThreadLocalRandom.current().nextLong(), info.idField().propertyType());
+    }
+
+    @Override
+    public Object[] generate(ModelInfo info, int count) {
+        Object[] result = new Object[count];
+        if (count <= 0) {
+            return result;
+        }
+        Class<?> idType = info.idField().propertyType();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long first = this.reserve(count);
+        for (int i = 0; i < count; i++) {
+            result[i] = this.convert(first + i, random.nextLong(), idType);
+        }
+        return result;
+    }
+
+    /**
+     * 预留 count 个连续的 时间戳|计数器
+     *
+     * @return 第一个
+     */
+    private long reserve(int count) {
+        long current, first;
+        do {
+            current = state.get();
+            long now = System.currentTimeMillis() << COUNTER_BITS;
+            if (now > current) {
+                // 新的毫秒，计数器从随机值开始（保留一半空间用于递增）
+                first = now | ThreadLocalRandom.current().nextInt(1 << (COUNTER_BITS - 1));
+            } else {
+                first = current + 1;
+            }
+        } while (!state.compareAndSet(current, first + count - 1));
+        return first;
+    }
+
+    private Object convert(long timeAndCounter, long random, Class<?> idType) {
+        long msb = ((timeAndCounter >>> COUNTER_BITS) << 16)
+                | (0x7L << 12)
+                | (timeAndCounter & ((1L << COUNTER_BITS) - 1));
+        long lsb = (random & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        if (idType == byte[].class) {
+            byte[] result = new byte[16];
+            for (int i = 0; i < 8; i++) {
+                result[i] = (byte) (msb >>> (56 - 8 * i));
+                result[i + 8] = (byte) (lsb >>> (56 - 8 * i));
+            }
+            return result;
+        }
+        char[] result = new char[32];
+        for (int i = 0; i < 16; i++) {
+            result[i] = HEX[(int) (msb >>> (60 - 4 * i)) & 0xF];
+            result[i + 16] = HEX[(int) (lsb >>> (60 - 4 * i)) & 0xF];
+        }
+        return new String(result);
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.loyayz.simple.helper;
+
+/**
+ * 雪花算法的机器标识提供者
+ * <p>
+ * 机器标识共 10 位（0 - 1023）：高 5 位为数据中心标识，低 5 位为机器标识，与原有 ID 的位布局一致。
+ * 实现类需有无参构造方法（可通过 @IdStrategy(workerIdProvider = ...) 指定），
+ * 且构造时不应访问网络或数据库，首次生成 ID 时才获取机器标识。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ * @see Snowflake
+ */
+public interface WorkerIdProvider {
+
+    /**
+     * 最大机器标识
+     */
+    long MAX_WORKER_ID = 1023L;
+
+    /**
+     * 获取机器标识，每次生成 ID 时调用，实现类应缓存结果
+     *
+     * @return 机器标识（0 - 1023）
+     */
+    long workerId();
+
+}
@@ -0,0 +1,55 @@
+package com.loyayz.simple.mybatis;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.aop.framework.Advised;
+
+/**
+ * 打开与调用方 SqlSession 处于同一事务的批处理 SqlSession（需要 mybatis-spring 依赖）
+ * <p>
+ * 只有 SqlSessionTemplate 且使用 SpringManagedTransactionFactory 时，新打开的 SqlSession 才能取得 Spring 事务中的连接；
+ * 从 SqlSessionTemplate 取 SqlSessionFactory，保留自定义的 SqlSessionFactory。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+final class BatchSessions {
+
+    private BatchSessions() {
+    }
+
+    /**
+     * @return 无法与调用方共享事务时为 null
+     */
+    static SqlSession open(SqlSession sqlSession) {
+        SqlSession target = target(sqlSession);
+        if (!(target instanceof SqlSessionTemplate)) {
+            return null;
+        }
+        SqlSessionFactory factory = ((SqlSessionTemplate) target).getSqlSessionFactory();
+        if (!(factory.getConfiguration().getEnvironment().getTransactionFactory() instanceof SpringManagedTransactionFactory)) {
+            return null;
+        }
+        return factory.openSession(ExecutorType.BATCH);
+    }
+
+    /**
+     * 注入的 SqlSession 为延迟加载（@Lazy）的代理
+     */
+    private static SqlSession target(SqlSession sqlSession) {
+        if (sqlSession instanceof Advised) {
+            try {
+                Object target = ((Advised) sqlSession).getTargetSource().getTarget();
+                if (target instanceof SqlSession) {
+                    return (SqlSession) target;
+                }
+            } catch (Exception e) {
+                return sqlSession;
+            }
+        }
+        return sqlSession;
+    }
+
+}
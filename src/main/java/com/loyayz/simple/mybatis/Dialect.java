@@ -0,0 +1,72 @@
+package com.loyayz.simple.mybatis;
+
+import java.util.Locale;
+
+/**
+ * 数据库方言
+ * 可通过系统参数指定，例 -Dsimple.dialect=MYSQL，否则根据数据库产品名识别
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public enum Dialect {
+    /**
+     * MySQL、MariaDB
+     */
+    MYSQL(65535),
+    /**
+     * PostgreSQL（pgjdbc 42.4 之前为 32767）
+     */
+    POSTGRESQL(32767),
+    /**
+     * SQL Server
+     */
+    SQLSERVER(2100),
+    H2(65535),
+    /**
+     * SQLite（3.32 之前为 999）
+     */
+    SQLITE(999),
+    /**
+     * 未识别的数据库
+     */
+    OTHER(2000);
+
+    /**
+     * 单条 SQL 最多的参数个数
+     */
+    private final int maxParameters;
+
+    Dialect(int maxParameters) {
+        this.maxParameters = maxParameters;
+    }
+
+    public int maxParameters() {
+        return this.maxParameters;
+    }
+
+    /**
+     * 根据数据库产品名（或 databaseId）识别方言
+     *
+     * @param databaseProductName 数据库产品名，例 DatabaseMetaData.getDatabaseProductName()
+     * @return 方言，未识别时为 OTHER
+     */
+    public static Dialect of(String databaseProductName) {
+        if (databaseProductName == null) {
+            return OTHER;
+        }
+        String name = databaseProductName.toLowerCase(Locale.ENGLISH);
+        if (name.contains("mysql") || name.contains("mariadb")) {
+            return MYSQL;
+        } else if (name.contains("postgres")) {
+            return POSTGRESQL;
+        } else if (name.contains("sql server") || name.contains("sqlserver")) {
+            return SQLSERVER;
+        } else if (name.equals("h2")) {
+            return H2;
+        } else if (name.contains("sqlite")) {
+            return SQLITE;
+        }
+        return OTHER;
+    }
+
+}
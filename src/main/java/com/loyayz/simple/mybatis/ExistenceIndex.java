@@ -0,0 +1,327 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.annotation.BloomIndex;
+import com.loyayz.simple.helper.BloomFilter;
+import com.loyayz.simple.helper.ModelInfo;
+import com.loyayz.simple.helper.Utils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 模型主键的存在性索引（{@link BloomIndex}）
+ * <p>
+ * 扫描全表主键构建布隆过滤器，构建完成前总是判断为可能存在。
+ * 通过 mapper 新增时先加入主键再执行 SQL；构建期间新增的主键同时加入新旧过滤器，
+ * 开始构建时尚未完成（未提交）的新增也会加入新过滤器，因此已存在的主键不会被判断为不存在。
+ * 布隆过滤器不能删除元素，删除的记录数超过一半或记录数超过容量时重新构建。
+ * 其他进程新增的主键只能通过定期（refreshSeconds）重新构建识别，因此默认（{@link BloomIndex#trustMisses()} 为 false）
+ * 判断为不存在时仍查询数据库，查到时加入过滤器；直接使用 SqlSession 新增数据后可调用 {@link #rebuild()}。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class ExistenceIndex {
+    private static final Log log = LogFactory.getLog(ExistenceIndex.class);
+    private static final ExecutorService BUILDER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "simple-bloom-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Class<?> modelClass;
+    private final BloomIndex config;
+    /**
+     * 扫描全表主键
+     */
+    private final Consumer<Consumer<Object>> scanner;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    private volatile long capacity;
+    /**
+     * 当前过滤器开始扫描的时间（System.nanoTime）
+     */
+    private volatile long builtAt;
+    /**
+     * 过滤器中的主键数（含重复加入的）
+     */
+    private final AtomicLong population = new AtomicLong();
+    private final LongAdder removed = new LongAdder();
+    /**
+     * 已加入过滤器但 SQL 尚未执行完成（或事务尚未结束）的主键 -> 次数
+     */
+    private final Map<Object, Integer> inFlight = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final LongAdder negativeCount = new LongAdder();
+    private final LongAdder positiveCount = new LongAdder();
+    private final LongAdder falsePositiveCount = new LongAdder();
+    private final LongAdder falseNegativeCount = new LongAdder();
+
+    private ExistenceIndex(Class<?> modelClass, BloomIndex config, Consumer<Consumer<Object>> scanner) {
+        this.modelClass = modelClass;
+        this.config = config;
+        this.scanner = scanner;
+        this.capacity = config.expectedInsertions();
+    }
+
+    /**
+     * 模型类有 @BloomIndex 注解且有主键时创建
+     */
+    static ExistenceIndex of(ModelInfo modelInfo, Consumer<Consumer<Object>> scanner) {
+        BloomIndex config = modelInfo.modelClass().getAnnotation(BloomIndex.class);
+        return config == null || modelInfo.idField() == null ? null : new ExistenceIndex(modelInfo.modelClass(), config, scanner);
+    }
+
+    /**
+     * @return false 表示一定不存在
+     */
+    boolean mightContain(Object id) {
+        BloomFilter current = this.filter;
+        if (current == null || this.stale()) {
+            this.rebuildAsync();
+        }
+        if (current == null || current.mightContain(Utils.idKey(id))) {
+            this.positiveCount.increment();
+            return true;
+        }
+        this.negativeCount.increment();
+        return false;
+    }
+
+    /**
+     * 判断为不存在时是否不查询数据库
+     */
+    boolean trustMisses() {
+        return this.config.trustMisses();
+    }
+
+    /**
+     * 查询数据库后调用：判断为不存在但查到记录（其他进程新增）时加入过滤器
+     *
+     * @param mightContain {@link #mightContain(Object)} 的结果
+     * @param exists       查询结果
+     */
+    void checked(Object id, boolean mightContain, boolean exists) {
+        if (mightContain && !exists) {
+            this.falsePositiveCount.increment();
+        } else if (!mightContain && exists) {
+            this.falseNegativeCount.increment();
+            this.release(this.add(Collections.singletonList(id), false));
+        }
+    }
+
+    /**
+     * 执行新增前加入主键
+     * 在 Spring 事务中时事务结束后自动释放，否则需在 SQL 执行后调用 {@link #release(List)}
+     *
+     * @return 需要调用方释放的主键，在事务中时为 null
+     */
+    List<Object> add(Collection<?> ids) {
+        return this.add(ids, true);
+    }
+
+    /**
+     * @param inTransaction 在 Spring 事务中时是否到事务结束时才释放
+     */
+    private List<Object> add(Collection<?> ids, boolean inTransaction) {
+        List<Object> keys = new ArrayList<>(ids.size());
+        this.lock.readLock().lock();
+        try {
+            for (Object id : ids) {
+                if (id == null) {
+                    continue;
+                }
+                Object key = Utils.idKey(id);
+                keys.add(key);
+                this.inFlight.merge(key, 1, Integer::sum);
+                BloomFilter current = this.filter, next = this.building;
+                if (current != null) {
+                    current.put(key);
+                }
+                if (next != null) {
+                    next.put(key);
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        this.population.addAndGet(keys.size());
+        if (inTransaction && Utils.springTxPresent && TransactionSynchronizationManager.isSynchronizationActive()) {
+            Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+            if (pending == null) {
+                pending = new Pending(this);
+                TransactionSynchronizationManager.bindResource(this, pending);
+                TransactionSynchronizationManager.registerSynchronization(pending);
+            }
+            pending.keys.addAll(keys);
+            return null;
+        }
+        return keys;
+    }
+
+    void release(List<Object> keys) {
+        for (Object key : keys) {
+            this.inFlight.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    void removed(long count) {
+        if (count > 0) {
+            this.removed.add(count);
+        }
+    }
+
+    /**
+     * 扫描全表主键重新构建（在当前线程执行，同时只有一个线程构建）
+     */
+    public synchronized void rebuild() {
+        long size = Math.max(this.config.expectedInsertions(), this.population.get() * 2);
+        BloomFilter next = new BloomFilter(size, this.config.fpp());
+        long start = System.nanoTime();
+        this.lock.writeLock().lock();
+        try {
+            this.building = next;
+            this.inFlight.keySet().forEach(next::put);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        AtomicLong scanned = new AtomicLong();
+        try {
+            this.scanner.accept(id -> {
+                if (id != null) {
+                    next.put(Utils.idKey(id));
+                    scanned.incrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.building = null;
+            throw e;
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.building = null;
+            this.filter = next;
+            this.capacity = size;
+            this.builtAt = start;
+            this.population.set(scanned.get());
+            this.removed.reset();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if (log.isInfoEnabled()) {
+            log.info(String.format("Built bloom index of %s with %d ids in %d ms", this.modelClass.getName(),
+                    scanned.get(), (System.nanoTime() - start) / 1_000_000));
+        }
+    }
+
+    /**
+     * 在后台线程构建（已在构建时忽略）
+     */
+    void rebuildAsync() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            BUILDER.execute(() -> {
+                try {
+                    this.rebuild();
+                } catch (RuntimeException e) {
+                    log.warn(String.format("Failed to build bloom index of %s", this.modelClass.getName()), e);
+                } finally {
+                    this.scheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 是否已构建完成
+     */
+    public boolean ready() {
+        return this.filter != null;
+    }
+
+    /**
+     * 判断为不存在的次数（trustMisses 为 true 时未查询数据库）
+     */
+    public long negativeCount() {
+        return this.negativeCount.sum();
+    }
+
+    /**
+     * 判断为可能存在的次数
+     */
+    public long positiveCount() {
+        return this.positiveCount.sum();
+    }
+
+    /**
+     * 判断为可能存在但实际不存在的次数
+     */
+    public long falsePositiveCount() {
+        return this.falsePositiveCount.sum();
+    }
+
+    /**
+     * 判断为不存在但查询到记录（其他进程新增）的次数，trustMisses 为 true 时不查询
+     */
+    public long falseNegativeCount() {
+        return this.falseNegativeCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ready=%s negatives=%s positives=%s falsePositives=%s falseNegatives=%s population=%s removed=%s",
+                this.ready(), this.negativeCount(), this.positiveCount(), this.falsePositiveCount(),
+                this.falseNegativeCount(), this.population.get(), this.removed.sum());
+    }
+
+    private boolean stale() {
+        long count = this.population.get();
+        long refreshSeconds = this.config.refreshSeconds();
+        return this.removed.sum() > Math.max(count / 2, 1024) || count > this.capacity * 2
+                || (refreshSeconds > 0 && System.nanoTime() - this.builtAt > refreshSeconds * 1_000_000_000L);
+    }
+
+    /**
+     * 事务结束后释放事务中新增的主键
+     */
+    private static final class Pending implements TransactionSynchronization {
+        private final ExistenceIndex owner;
+        private final List<Object> keys = new ArrayList<>();
+
+        private Pending(ExistenceIndex owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this.owner);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(this.owner, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this.owner);
+            this.owner.release(this.keys);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.Utils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 事务内的标识映射：同一事务中按主键查询到的模型对象只查询一次
+ * <p>
+ * 开启后（{@link #begin()}），当前事务中 MybatisBaseMapper 的 findById、listByIds 先从映射中取，
+ * 只查询映射中没有的主键，查询结果（包括不存在的主键）记入映射；同一主键返回同一个对象。
+ * 通过 mapper 修改、删除记录时移除对应的主键，按条件修改、删除时清空该模型的映射。
+ * 直接使用 SqlSession 或自定义 mapper 修改数据后，可调用 {@link #clearCurrent()}。
+ * 事务结束时清空。
+ * <p>
+ * 需要 spring-tx 依赖，且在 Spring 事务中使用
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class IdentityMap implements TransactionSynchronization {
+    private static final Object RESOURCE_KEY = IdentityMap.class;
+    /**
+     * 记录不存在
+     */
+    static final Object ABSENT = new Object();
+
+    /**
+     * 模型类 -> 主键 -> 模型对象
+     */
+    private final Map<Class<?>, Map<Object, Object>> models = new HashMap<>();
+
+    private IdentityMap() {
+    }
+
+    /**
+     * 在当前 Spring 事务中开启标识映射（已开启时返回已有的）
+     */
+    public static IdentityMap begin() {
+        IdentityMap current = current();
+        if (current != null) {
+            return current;
+        }
+        Assert.isTrue(TransactionSynchronizationManager.isSynchronizationActive(), "标识映射需要在 Spring 事务中开启");
+        current = new IdentityMap();
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, current);
+        TransactionSynchronizationManager.registerSynchronization(current);
+        return current;
+    }
+
+    /**
+     * 当前事务的标识映射，未开启时为 null
+     */
+    public static IdentityMap current() {
+        return (IdentityMap) TransactionSynchronizationManager.getResource(RESOURCE_KEY);
+    }
+
+    /**
+     * 清空当前事务的标识映射（未开启时忽略）
+     */
+    public static void clearCurrent() {
+        IdentityMap current = current();
+        if (current != null) {
+            current.models.clear();
+        }
+    }
+
+    /**
+     * 映射中的对象数
+     */
+    public int size() {
+        return this.models.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * @return 模型对象；记录不存在时为 {@link #ABSENT}；映射中没有该主键时为 null
+     */
+    Object get(Class<?> modelClass, Object id) {
+        Map<Object, Object> map = this.models.get(modelClass);
+        return map == null ? null : map.get(Utils.idKey(id));
+    }
+
+    /**
+     * @param model 模型对象，null 表示记录不存在
+     */
+    void put(Class<?> modelClass, Object id, Object model) {
+        this.models.computeIfAbsent(modelClass, key -> new HashMap<>())
+                .put(Utils.idKey(id), model == null ? ABSENT : model);
+    }
+
+    void remove(Class<?> modelClass, Object id) {
+        Map<Object, Object> map = this.models.get(modelClass);
+        if (map != null && id != null) {
+            map.remove(Utils.idKey(id));
+        }
+    }
+
+    void clear(Class<?> modelClass) {
+        this.models.remove(modelClass);
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, this);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        this.models.clear();
+        TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.ModelField;
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按非空字段掩码缓存静态 SQL
+ * 用于替代 <if test="属性名 != null"> 动态脚本，避免每次调用都解析脚本和执行 OGNL
+ * <p>
+ * 掩码第 i 位表示 fields.get(i) 是否参与 SQL（非 null 或基本类型）
+ * 每种掩码只构建一次 {@link org.apache.ibatis.builder.StaticSqlSource}
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+final class MaskedSqlSource implements SqlSource {
+    /**
+     * 掩码最多支持的字段数
+     */
+    static final int MAX_FIELDS = Long.SIZE;
+
+    private final Configuration configuration;
+    private final Class<?> parameterType;
+    private final List<ModelField> fields;
+    /**
+     * 参数对象 -> 掩码
+     */
+    private final ToLongFunction<Object> masker;
+    /**
+     * 根据参与 SQL 的字段列表生成不含动态标签的脚本
+     */
+    private final Function<List<ModelField>, String> scriptBuilder;
+    private final Map<Long, SqlSource> cache = new ConcurrentHashMap<>();
+
+    MaskedSqlSource(Configuration configuration, Class<?> parameterType,
+                    List<ModelField> fields, Function<List<ModelField>, String> scriptBuilder) {
+        this(configuration, parameterType, fields, model -> mask(fields, model), scriptBuilder);
+    }
+
+    /**
+     * @param masker 从参数对象中取掩码（参数对象不是模型对象时使用）
+     */
+    MaskedSqlSource(Configuration configuration, Class<?> parameterType,
+                    List<ModelField> fields, ToLongFunction<Object> masker,
+                    Function<List<ModelField>, String> scriptBuilder) {
+        if (fields.size() > MAX_FIELDS) {
+            throw new IllegalArgumentException(String.format("字段数超过 %s，不支持按掩码生成静态 SQL", MAX_FIELDS));
+        }
+        this.configuration = configuration;
+        this.parameterType = parameterType;
+        this.fields = fields;
+        this.masker = masker;
+        this.scriptBuilder = scriptBuilder;
+    }
+
+    /**
+     * 字段数是否支持按掩码生成静态 SQL
+     */
+    static boolean supports(List<ModelField> fields) {
+        return fields.size() <= MAX_FIELDS;
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        long mask = this.masker.applyAsLong(parameterObject);
+        SqlSource sqlSource = this.cache.get(mask);
+        if (sqlSource == null) {
+            sqlSource = this.cache.computeIfAbsent(mask, this::build);
+        }
+        return sqlSource.getBoundSql(parameterObject);
+    }
+
+    /**
+     * 计算模型对象的非空字段掩码
+     *
+     * @param fields 字段列表
+     * @param model  模型对象（可以为 null）
+     */
+    static long mask(List<ModelField> fields, Object model) {
+        if (model == null) {
+            return 0L;
+        }
+        long mask = 0L;
+        for (int i = 0; i < fields.size(); i++) {
+            ModelField field = fields.get(i);
+            if (field.propertyType().isPrimitive() || field.value(model) != null) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private SqlSource build(long mask) {
+        List<ModelField> presentFields = new ArrayList<>();
+        for (int i = 0; i < this.fields.size(); i++) {
+            if ((mask & (1L << i)) != 0) {
+                presentFields.add(this.fields.get(i));
+            }
+        }
+        String sql = this.scriptBuilder.apply(presentFields);
+        return new SqlSourceBuilder(this.configuration).parse(sql, this.parameterType, new HashMap<>());
+    }
+
+}
@@ -0,0 +1,285 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.annotation.EntityCache;
+import com.loyayz.simple.helper.MappedStore;
+import com.loyayz.simple.helper.ModelCodec;
+import com.loyayz.simple.helper.ModelInfo;
+import com.loyayz.simple.helper.TinyLfuCache;
+import com.loyayz.simple.helper.Utils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 模型的实体缓存（{@link EntityCache}）
+ * <p>
+ * 缓存和返回的都是模型对象的副本，调用方修改返回的对象不影响缓存。
+ * 修改记录时立即移除缓存，修改执行后再移除一次；在 Spring 事务中修改时，事务结束后递增表的写版本号并再移除一次，
+ * 且该事务不再写入这个模型的缓存，避免其他事务读到未提交的数据或在提交前写回旧数据。
+ * 查询前记录表的写版本号（{@link TableVersion}），写入缓存时版本号已改变则不写入（写入后才改变则移除），
+ * 避免查询期间其他线程的修改被查到的旧数据覆盖。
+ * <p>
+ * 开启内存映射文件缓存（{@link EntityCache#mappedFileMb()}）时，为堆内缓存之下的第二级：
+ * 模型对象按字段编码（{@link ModelCodec}）后连同写入时间写入文件，堆内未命中时从文件中读取并放入堆内缓存（剩余的过期时间）；
+ * 文件在进程重启后保留（模型结构改变时清空），读取时按当前的 ttlSeconds 丢弃写入过久的记录，修改、删除时同样移除。
+ * 只有当前进程的修改会移除文件中的记录，其他进程或进程停止期间的修改最长在 ttlSeconds 后才可见，
+ * 因此只适用于只有一个进程写入、读多写少的表；字段类型不支持编码或 ttlSeconds 小于等于 0 时不开启。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class ModelCache {
+    private static final Log log = LogFactory.getLog(ModelCache.class);
+    /**
+     * 文件中的记录格式（写入时间 + 编码后的模型），改变时清空已有文件
+     */
+    private static final long RECORD_FORMAT = 2;
+    /**
+     * 待移除的键中表示全部清空
+     */
+    private static final Object ALL = new Object();
+
+    private final ModelInfo modelInfo;
+    private final TableVersion tableVersion;
+    private final TinyLfuCache<Object, Object> cache;
+    private final long ttlMillis;
+    /**
+     * 内存映射文件缓存，未开启时为 null
+     */
+    private final MappedStore store;
+    private final ModelCodec codec;
+    /**
+     * 当前线程不在事务中修改时已移除、修改执行后需再移除一次的键
+     */
+    private final ThreadLocal<Set<Object>> pending = ThreadLocal.withInitial(HashSet::new);
+
+    ModelCache(ModelInfo modelInfo, TableVersion tableVersion, EntityCache config) {
+        this.modelInfo = modelInfo;
+        this.tableVersion = tableVersion;
+        this.ttlMillis = config.ttlSeconds() * 1000;
+        this.cache = new TinyLfuCache<>(config.maximumSize(), this.ttlMillis);
+        ModelCodec codec = config.mappedFileMb() > 0 ? ModelCodec.of(modelInfo) : null;
+        if (codec != null && this.ttlMillis <= 0) {
+            log.warn(String.format("Mapped file cache of %s requires ttlSeconds > 0, disabled", modelInfo.modelClass().getName()));
+            codec = null;
+        }
+        this.store = codec == null ? null : MappedStore.open(mappedFile(modelInfo),
+                31 * codec.fingerprint() + RECORD_FORMAT, config.mappedFileMb());
+        this.codec = this.store == null ? null : codec;
+    }
+
+    /**
+     * 模型类有 @EntityCache 注解且有主键时创建
+     */
+    static ModelCache of(ModelInfo modelInfo, TableVersion tableVersion) {
+        EntityCache config = modelInfo.modelClass().getAnnotation(EntityCache.class);
+        return config == null || modelInfo.idField() == null ? null : new ModelCache(modelInfo, tableVersion, config);
+    }
+
+    /**
+     * @return 模型对象副本，未缓存时为 null
+     */
+    Object get(Object id) {
+        Object key = Utils.idKey(id);
+        Object model = this.cache.get(key);
+        if (model == null && this.store != null) {
+            long version = this.version();
+            byte[] storeKey = ModelCodec.encodeKey(key);
+            byte[] value = this.store.get(storeKey);
+            if (value != null) {
+                long age = System.currentTimeMillis() - ByteBuffer.wrap(value).getLong();
+                if (age >= 0 && age < this.ttlMillis) {
+                    model = this.codec.decode(Arrays.copyOfRange(value, Long.BYTES, value.length));
+                    this.putHeap(key, model, version, this.ttlMillis - age);
+                } else {
+                    // 写入过久（如 ttlSeconds 在重启后调小）或系统时间回拨
+                    this.store.remove(storeKey);
+                }
+            }
+        }
+        return model == null ? null : this.modelInfo.copy(model);
+    }
+
+    /**
+     * 查询前调用，查询结果通过 {@link #put(Object, long)} 写入
+     *
+     * @return 表的写版本号
+     */
+    long version() {
+        return this.tableVersion.get();
+    }
+
+    /**
+     * @param version 查询前的表写版本号，已改变时不写入
+     */
+    void put(Object model, long version) {
+        if (!this.writable() || version != this.version()) {
+            return;
+        }
+        Object key = Utils.idKey(this.modelInfo.idValue(model));
+        this.cache.put(key, this.modelInfo.copy(model));
+        if (this.store != null) {
+            long now = System.currentTimeMillis();
+            byte[] encoded = this.codec.encode(model);
+            byte[] value = ByteBuffer.allocate(Long.BYTES + encoded.length).putLong(now).put(encoded).array();
+            this.store.put(ModelCodec.encodeKey(key), value, now + this.ttlMillis);
+        }
+        // 检查与写入之间表被修改
+        if (version != this.version()) {
+            this.remove(key);
+        }
+    }
+
+    void invalidate(Object id) {
+        if (id == null) {
+            return;
+        }
+        Object key = Utils.idKey(id);
+        this.remove(key);
+        Invalidation invalidation = this.invalidation();
+        if (invalidation != null) {
+            invalidation.keys.add(key);
+        } else {
+            this.pending.get().add(key);
+        }
+    }
+
+    void invalidateAll() {
+        this.clear();
+        Invalidation invalidation = this.invalidation();
+        if (invalidation != null) {
+            invalidation.all = true;
+        } else {
+            this.pending.get().add(ALL);
+        }
+    }
+
+    /**
+     * 修改执行后调用（表的写版本号已再次递增）：再移除一次修改前移除的键
+     * 修改执行前其他线程可能已查到旧数据，并在修改前的移除之后写入缓存
+     */
+    void written() {
+        Set<Object> keys = this.pending.get();
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (keys.contains(ALL)) {
+            this.clear();
+        } else {
+            keys.forEach(this::remove);
+        }
+        keys.clear();
+    }
+
+    /**
+     * 命中率等统计信息
+     */
+    public TinyLfuCache.Stats stats() {
+        return this.cache.stats();
+    }
+
+    /**
+     * 内存映射文件缓存（可查看命中次数），未开启时为 null
+     */
+    public MappedStore mappedStore() {
+        return this.store;
+    }
+
+    /**
+     * 清空缓存（直接使用 SqlSession 或自定义 mapper 修改数据后调用）
+     */
+    public void clear() {
+        this.cache.clear();
+        if (this.store != null) {
+            this.store.clear();
+        }
+    }
+
+    private void putHeap(Object key, Object model, long version, long ttlMillis) {
+        if (this.writable() && version == this.version()) {
+            this.cache.put(key, model, ttlMillis);
+            if (version != this.version()) {
+                this.cache.remove(key);
+            }
+        }
+    }
+
+    private void remove(Object key) {
+        this.cache.remove(key);
+        if (this.store != null) {
+            this.store.remove(ModelCodec.encodeKey(key));
+        }
+    }
+
+    private static Path mappedFile(ModelInfo modelInfo) {
+        String dir = System.getProperty("simple.cacheDir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "simple-crud-cache").toString());
+        return Paths.get(dir, modelInfo.modelClass().getName() + ".cache");
+    }
+
+    /**
+     * 当前事务未修改过该模型时才写入缓存
+     */
+    private boolean writable() {
+        return !Utils.springTxPresent || TransactionSynchronizationManager.getResource(this) == null;
+    }
+
+    /**
+     * 当前事务的待移除记录，不在事务中时为 null
+     */
+    private Invalidation invalidation() {
+        if (!Utils.springTxPresent || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Invalidation invalidation = (Invalidation) TransactionSynchronizationManager.getResource(this);
+        if (invalidation == null) {
+            invalidation = new Invalidation(this);
+            TransactionSynchronizationManager.bindResource(this, invalidation);
+            TransactionSynchronizationManager.registerSynchronization(invalidation);
+        }
+        return invalidation;
+    }
+
+    /**
+     * 事务结束后移除事务中修改过的记录
+     */
+    private static final class Invalidation implements TransactionSynchronization {
+        private final ModelCache owner;
+        private final Set<Object> keys = new HashSet<>();
+        private boolean all;
+
+        private Invalidation(ModelCache owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this.owner);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(this.owner, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this.owner);
+            // 先递增版本号再移除：提交前查到旧数据的线程在移除之后写入时会因版本号改变而放弃
+            this.owner.tableVersion.increment();
+            if (this.all) {
+                this.owner.clear();
+            } else {
+                this.keys.forEach(this.owner::remove);
+            }
+        }
+    }
+
+}
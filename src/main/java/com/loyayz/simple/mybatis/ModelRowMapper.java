@@ -0,0 +1,284 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.ModelField;
+import com.loyayz.simple.helper.ModelInfo;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.*;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 模型的查询结果映射
+ * <p>
+ * 替代 MyBatis 的自动映射（MetaObject、反射 setter、逐行按列名匹配）：
+ * 按结果集的列标签解析一次 列序号 -> 字段，之后每行直接通过 ResultSet.getXxx 读取已知类型的值，
+ * 并通过 {@link ModelField#value(Object, Object)} 赋值。
+ * 属性类型注册了自定义 TypeHandler 时仍使用该 TypeHandler。
+ * <p>
+ * 以模型的数组类型（T[]）注册为 TypeHandler，并作为查询 MappedStatement 的 resultType：
+ * MyBatis 对有 TypeHandler 的 resultType 直接调用 TypeHandler 创建整行结果，不再自动映射。
+ * 使用数组类型是为了不影响模型类自身在其他 mapper（如自定义 XML）中的映射。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+final class ModelRowMapper implements TypeHandler<Object> {
+    private final Configuration configuration;
+    private final ModelInfo modelInfo;
+    /**
+     * 当前线程正在读取的结果集及其映射计划，避免每行都读取 ResultSetMetaData
+     * 只保存弱引用，不阻止结果集和模型类被回收
+     */
+    private final ThreadLocal<Cursor> cursor = ThreadLocal.withInitial(Cursor::new);
+    /**
+     * 最近一次的映射计划，列标签相同时复用
+     */
+    private volatile Plan plan;
+
+    private ModelRowMapper(Configuration configuration, ModelInfo modelInfo) {
+        this.configuration = configuration;
+        this.modelInfo = modelInfo;
+    }
+
+    /**
+     * 注册模型的结果映射
+     *
+     * @return 查询 MappedStatement 使用的 resultType（模型数组类型）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Class<?> register(Configuration configuration, ModelInfo modelInfo) {
+        Class rowType = Array.newInstance(modelInfo.modelClass(), 0).getClass();
+        TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+        synchronized (configuration) {
+            TypeHandler<?> handler = registry.getTypeHandler(rowType);
+            if (!(handler instanceof ModelRowMapper) || ((ModelRowMapper) handler).modelInfo != modelInfo) {
+                registry.register(rowType, new ModelRowMapper(configuration, modelInfo));
+            }
+        }
+        return rowType;
+    }
+
+    @Override
+    public Object getResult(ResultSet rs, String columnName) throws SQLException {
+        return this.mapRow(rs);
+    }
+
+    @Override
+    public Object getResult(ResultSet rs, int columnIndex) throws SQLException {
+        return this.mapRow(rs);
+    }
+
+    /**
+     * 存储过程输出参数：游标（ResultSet）按同一映射计划映射为模型数组，其他值原样返回（同 ObjectTypeHandler）
+     */
+    @Override
+    public Object getResult(CallableStatement cs, int columnIndex) throws SQLException {
+        Object value = cs.getObject(columnIndex);
+        if (!(value instanceof ResultSet)) {
+            return value;
+        }
+        List<Object> rows = new ArrayList<>();
+        try (ResultSet rs = (ResultSet) value) {
+            while (rs.next()) {
+                rows.add(this.mapRow(rs));
+            }
+        }
+        return rows.toArray((Object[]) Array.newInstance(modelInfo.modelClass(), rows.size()));
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int i, Object parameter, JdbcType jdbcType) throws SQLException {
+        ps.setObject(i, parameter);
+    }
+
+    private Object mapRow(ResultSet rs) throws SQLException {
+        Plan plan = this.plan(rs);
+        ObjectFactory objectFactory = configuration.getObjectFactory();
+        Object model = objectFactory.getClass() == DefaultObjectFactory.class ?
+                modelInfo.newInstance() : objectFactory.create(modelInfo.modelClass());
+        for (int i = 0; i < plan.columns.length; i++) {
+            Object value = plan.readers[i].read(rs, plan.columns[i]);
+            if (value != null || plan.setNull[i]) {
+                plan.fields[i].value(model, value);
+            }
+        }
+        return model;
+    }
+
+    private Plan plan(ResultSet rs) throws SQLException {
+        Cursor cursor = this.cursor.get();
+        Plan plan = cursor.plan.get();
+        if (plan != null && cursor.resultSet.get() == rs) {
+            return plan;
+        }
+        ResultSetMetaData metaData = rs.getMetaData();
+        plan = this.plan;
+        if (plan == null || !plan.matches(metaData)) {
+            plan = this.plan = this.createPlan(metaData);
+        }
+        cursor.resultSet = new WeakReference<>(rs);
+        cursor.plan = new WeakReference<>(plan);
+        return plan;
+    }
+
+    /**
+     * 列标签按属性名匹配（查询脚本为 字段名 AS 属性名），其次按字段名匹配，均不区分大小写
+     */
+    private Plan createPlan(ResultSetMetaData metaData) throws SQLException {
+        Map<String, ModelField> fieldMap = new HashMap<>();
+        for (ModelField field : modelInfo.fields()) {
+            fieldMap.putIfAbsent(field.column().toUpperCase(Locale.ENGLISH), field);
+        }
+        for (ModelField field : modelInfo.fields()) {
+            fieldMap.put(field.property().toUpperCase(Locale.ENGLISH), field);
+        }
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        List<Integer> columns = new ArrayList<>(columnCount);
+        List<ModelField> fields = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            labels[i - 1] = metaData.getColumnLabel(i);
+            ModelField field = fieldMap.remove(labels[i - 1].toUpperCase(Locale.ENGLISH));
+            if (field != null && !fields.contains(field)) {
+                columns.add(i);
+                fields.add(field);
+            }
+        }
+        boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+        Plan plan = new Plan(labels, fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            ModelField field = fields.get(i);
+            plan.columns[i] = columns.get(i);
+            plan.fields[i] = field;
+            plan.readers[i] = this.reader(field.propertyType());
+            plan.setNull[i] = callSettersOnNulls && !field.propertyType().isPrimitive();
+        }
+        return plan;
+    }
+
+    /**
+     * 属性类型使用 MyBatis 内置 TypeHandler 时直接调用 ResultSet.getXxx，否则使用已注册的 TypeHandler
+     */
+    private ColumnReader reader(Class<?> type) {
+        TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+        TypeHandler<?> handler = registry.getTypeHandler(type);
+        Class<?> handlerClass = handler == null ? null : handler.getClass();
+        if (handlerClass == StringTypeHandler.class) {
+            return ResultSet::getString;
+        } else if (handlerClass == LongTypeHandler.class) {
+            return (rs, i) -> {
+                long value = rs.getLong(i);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (handlerClass == IntegerTypeHandler.class) {
+            return (rs, i) -> {
+                int value = rs.getInt(i);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (handlerClass == ShortTypeHandler.class) {
+            return (rs, i) -> {
+                short value = rs.getShort(i);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (handlerClass == ByteTypeHandler.class) {
+            return (rs, i) -> {
+                byte value = rs.getByte(i);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (handlerClass == BooleanTypeHandler.class) {
+            return (rs, i) -> {
+                boolean value = rs.getBoolean(i);
+                return !value && rs.wasNull() ? null : value;
+            };
+        } else if (handlerClass == DoubleTypeHandler.class) {
+            return (rs, i) -> {
+                double value = rs.getDouble(i);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (handlerClass == FloatTypeHandler.class) {
+            return (rs, i) -> {
+                float value = rs.getFloat(i);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (handlerClass == BigDecimalTypeHandler.class) {
+            return ResultSet::getBigDecimal;
+        } else if (handlerClass == DateTypeHandler.class) {
+            return (rs, i) -> {
+                Timestamp value = rs.getTimestamp(i);
+                return value == null ? null : new java.util.Date(value.getTime());
+            };
+        } else if (handlerClass == SqlTimestampTypeHandler.class) {
+            return ResultSet::getTimestamp;
+        } else if (handlerClass == ByteArrayTypeHandler.class) {
+            return ResultSet::getBytes;
+        } else if (handlerClass == LocalDateTimeTypeHandler.class) {
+            return (rs, i) -> rs.getObject(i, LocalDateTime.class);
+        } else if (handlerClass == LocalDateTypeHandler.class) {
+            return (rs, i) -> rs.getObject(i, LocalDate.class);
+        } else if (handler != null && handlerClass != UnknownTypeHandler.class) {
+            return handler::getResult;
+        }
+        return ResultSet::getObject;
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+
+        /**
+         * 读取列值
+         *
+         * @param rs     结果集
+         * @param column 列序号
+         * @return 列值，null 表示数据库值为 NULL
+         */
+        Object read(ResultSet rs, int column) throws SQLException;
+
+    }
+
+    /**
+     * 映射计划：结果集第 columns[i] 列 -> fields[i]
+     */
+    private static final class Plan {
+        private final String[] labels;
+        private final int[] columns;
+        private final ModelField[] fields;
+        private final ColumnReader[] readers;
+        /**
+         * 值为 null 时是否仍调用写函数（callSettersOnNulls）
+         */
+        private final boolean[] setNull;
+
+        private Plan(String[] labels, int size) {
+            this.labels = labels;
+            this.columns = new int[size];
+            this.fields = new ModelField[size];
+            this.readers = new ColumnReader[size];
+            this.setNull = new boolean[size];
+        }
+
+        private boolean matches(ResultSetMetaData metaData) throws SQLException {
+            if (metaData.getColumnCount() != labels.length) {
+                return false;
+            }
+            for (int i = 0; i < labels.length; i++) {
+                if (!labels[i].equals(metaData.getColumnLabel(i + 1))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Cursor {
+        private WeakReference<ResultSet> resultSet = new WeakReference<>(null);
+        private WeakReference<Plan> plan = new WeakReference<>(null);
+    }
+
+}
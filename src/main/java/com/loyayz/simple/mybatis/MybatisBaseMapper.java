@@ -3,9 +3,12 @@ package com.loyayz.simple.mybatis;
 import com.loyayz.simple.BaseMapper;
 import com.loyayz.simple.Page;
 import com.loyayz.simple.Sorter;
+import com.loyayz.simple.helper.DataSourceAware;
 import com.loyayz.simple.helper.ModelField;
 import com.loyayz.simple.helper.ModelInfo;
+import com.loyayz.simple.helper.ModelSnapshots;
 import com.loyayz.simple.helper.Utils;
+import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
@@ -20,7 +23,15 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.util.Assert;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -30,9 +41,47 @@ import static org.apache.ibatis.mapping.SqlCommandType.*;
  * @author loyayz (loyayz@foxmail.com)
  */
 public class MybatisBaseMapper<T> implements BaseMapper<T> {
+    /**
+     * 是否按非空字段掩码使用静态 SQL（替代 if 标签的动态脚本）
+     * 可通过系统参数开启，例 -Dsimple.staticSql=true
+     */
+    private static final boolean STATIC_SQL = Boolean.getBoolean("simple.staticSql");
+    /**
+     * 每个 mapper 最多缓存的排序变体数量
+     * 可通过系统参数修改，例 -Dsimple.sorterCapacity=256
+     */
+    private static final int SORTER_CAPACITY = Integer.getInteger("simple.sorterCapacity", 256);
+    /**
+     * 查询结果是否使用 {@link ModelRowMapper} 映射（替代 MyBatis 自动映射）
+     * 可通过系统参数关闭，例 -Dsimple.rowMapper=false
+     */
+    private static final boolean ROW_MAPPER = Boolean.parseBoolean(System.getProperty("simple.rowMapper", "true"));
+    /**
+     * batchInsert 每批最多的行数（同时受方言的参数个数限制）
+     * 可通过系统参数修改，例 -Dsimple.batchSize=1000
+     */
+    private static final int BATCH_SIZE = Integer.getInteger("simple.batchSize", 1000);
+    /**
+     * updateChangedById 参数中模型对象、变更字段掩码的参数名
+     */
+    private static final String CHANGED_MODEL = "model";
+    private static final String CHANGED_MASK = "changed";
+    /**
+     * batchInsert 是否使用 JDBC 批处理（ExecutorType.BATCH 逐行执行单行 insert，每批 flush 一次），
+     * 默认使用多行 VALUES 语句。可通过系统参数开启，例 -Dsimple.batchExecutor=true
+     */
+    private static final boolean BATCH_EXECUTOR = Boolean.getBoolean("simple.batchExecutor");
+
     private final Class<T> modelClass;
     private final ModelInfo modelInfo;
     private final String modelName;
+    /**
+     * 固定的 SQL 脚本
+     * 方法名 -> 脚本
+     *
+     * @see MybatisScripts#fixedScripts(String, List, ModelField)
+     */
+    private final Map<String, String> scripts;
     /**
      * 缓存查询片段
      * SELECT 字段列表 FROM 表名
@@ -43,6 +92,37 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
      * SELECT 字段列表 FROM 表名 where 条件
      */
     private final String selectByConditionScript;
+    /**
+     * listByCondition 的排序变体
+     */
+    private final SorterRegistry sorterRegistry;
+
+    /**
+     * 已注册的 MappedStatement
+     * 方法名 -> MappedStatement id
+     */
+    private final Map<String, String> statements = new ConcurrentHashMap<>();
+    private volatile Dialect dialect;
+    /**
+     * 实体缓存，模型类没有 @EntityCache 注解时为 null
+     */
+    private final ModelCache modelCache;
+    /**
+     * 表的写版本号
+     */
+    private final TableVersion tableVersion;
+    /**
+     * 查询缓存，模型类没有 @QueryCache 注解时为 null
+     */
+    private final QueryResultCache queryCache;
+    /**
+     * 主键的存在性索引，模型类没有 @BloomIndex 注解时为 null
+     */
+    private final ExistenceIndex existenceIndex;
+    /**
+     * 复制到内存的表，模型类没有 @Replicated 注解时为 null
+     */
+    private final ReplicatedTable replica;
 
     @Lazy
     @Autowired
@@ -52,47 +132,150 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
         this.modelClass = modelClass;
         this.modelInfo = modelInfo;
         this.modelName = modelInfo.modelName();
-        this.selectScript = String.format("SELECT %s FROM %s ",
-                MybatisScripts.selectColumns(modelInfo.fields()), this.modelName);
-        this.selectByConditionScript = this.selectScript + MybatisScripts.conditions(this.modelInfo);
+        this.scripts = modelInfo.scripts() != null ? modelInfo.scripts() :
+                MybatisScripts.fixedScripts(this.modelName, modelInfo.fields(), modelInfo.idField());
+        this.selectScript = this.script("select");
+        this.selectByConditionScript = this.script("selectByCondition");
+        this.sorterRegistry = new SorterRegistry(SORTER_CAPACITY, this::listByConditionSqlSource);
+        this.tableVersion = TableVersion.of(this.modelName);
+        this.modelCache = ModelCache.of(modelInfo, this.tableVersion);
+        this.queryCache = QueryResultCache.of(modelInfo, this.tableVersion);
+        this.existenceIndex = ExistenceIndex.of(modelInfo, this::scanIds);
+        this.replica = ReplicatedTable.of(modelInfo, this.tableVersion, this::listAll);
+        if (modelInfo.idGenerator() instanceof DataSourceAware) {
+            ((DataSourceAware) modelInfo.idGenerator())
+                    .dataSource(() -> sqlSession.getConfiguration().getEnvironment().getDataSource());
+        }
     }
 
     @Override
     public boolean insert(T model) {
         this.modelInfo.fillIdIfNull(model);
-        String msId = this.addMappedStatement("insert", INSERT, Integer.class,
-                () -> {
-                    List<ModelField> fields = this.modelInfo.getInsertFields();
-                    String columns = MybatisScripts.insertColumns(fields, true);
-                    String properties = MybatisScripts.insertProperties(fields, true, "");
-                    return String.format("<script>INSERT INTO %s \n %s VALUES \n %s</script>",
-                            this.modelName, columns, properties);
-                });
-        return sqlSession.insert(msId, model) == 1;
+        // 自增主键需要立即执行以获取主键值
+        boolean idReady = this.modelInfo.idField() == null || this.modelInfo.idValue(model) != null;
+        this.evict(model);
+        return this.indexInserts(Collections.singletonList(model), () -> {
+            if (idReady && this.enqueue(UnitOfWork.Operation.INSERT, model)) {
+                return true;
+            }
+            return this.written(this.session().insert(this.insertStatement(), model)) == 1;
+        });
     }
 
     @Override
     public boolean batchInsert(List<T> models) {
+        for (int count : this.batchInsertCounts(models)) {
+            if (count != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int[] batchInsertCounts(List<T> models) {
         if (models.isEmpty()) {
-            return false;
+            return new int[0];
         }
+        this.modelInfo.fillIdIfNull(models);
+        this.evict(models);
+        return this.indexInserts(models, () -> this.batchInsertChunks(models));
+    }
+
+    private int[] batchInsertChunks(List<T> models) {
+        if (BATCH_EXECUTOR) {
+            return this.executeBatch(this.batchInsertRowStatement(), Collections.singletonList(models));
+        }
+        int columns = Math.max(this.modelInfo.getInsertFields().size(), 1);
+        int chunkSize = Math.max(1, Math.min(BATCH_SIZE, this.dialect().maxParameters() / columns));
+        String msId = this.batchInsertStatement();
+        int[] result = new int[(models.size() + chunkSize - 1) / chunkSize];
+        for (int i = 0; i < result.length; i++) {
+            Map<String, Object> param = new HashMap<>(3);
+            param.put("list", models.subList(i * chunkSize, Math.min(models.size(), (i + 1) * chunkSize)));
+            result[i] = this.written(this.session().insert(msId, param));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean upsert(T model) {
+        return this.batchUpsert(Collections.singletonList(model)) != 0;
+    }
+
+    @Override
+    public int batchUpsert(List<T> models) {
+        if (models.isEmpty()) {
+            return 0;
+        }
+        this.modelInfo.fillIdIfNull(models);
+        // 主键为 null（自增主键）的记录不可能已存在，直接新增
+        List<T> inserts = new ArrayList<>();
+        // 同一条语句中主键重复时 ON CONFLICT / MERGE 会报错，保留最后一条
+        Map<Object, T> distinct = new LinkedHashMap<>();
         for (T model : models) {
-            this.modelInfo.fillIdIfNull(model);
-        }
-        String msId = this.addMappedStatement("batchInsert", INSERT, Integer.class,
-                () -> {
-                    String itemPrefix = "ent";
-                    List<ModelField> fields = this.modelInfo.getInsertFields();
-                    String columns = MybatisScripts.insertColumns(fields, false);
-                    String properties = MybatisScripts.insertProperties(fields, false, itemPrefix);
-                    properties = String.format("<foreach collection=\"list\" item=\"%s\" separator=\",\">%s</foreach>",
-                            itemPrefix, properties);
-                    return String.format("<script>INSERT INTO %s \n %s VALUES \n %s</script>",
-                            this.modelName, columns, properties);
-                });
-        Map<String, Object> param = new HashMap<>(3);
-        param.put("list", models);
-        return sqlSession.insert(msId, param) > 0;
+            Object id = this.modelInfo.idValue(model);
+            if (id == null) {
+                inserts.add(model);
+            } else {
+                Object key = id instanceof byte[] ? ByteBuffer.wrap((byte[]) id) : id;
+                distinct.remove(key);
+                distinct.put(key, model);
+            }
+        }
+        int inserted = inserts.isEmpty() ? 0 : sum(this.batchInsertCounts(inserts));
+        if (distinct.isEmpty()) {
+            return inserted;
+        }
+        List<T> rows = new ArrayList<>(distinct.values());
+        this.evict(rows);
+        int upserted = this.dialect() == Dialect.OTHER ? this.insertOrUpdate(rows)
+                : this.indexInserts(rows, () -> this.batchUpsertChunks(rows));
+        if (inserted == Statement.SUCCESS_NO_INFO || upserted == Statement.SUCCESS_NO_INFO) {
+            return Statement.SUCCESS_NO_INFO;
+        }
+        return inserted + upserted;
+    }
+
+    /**
+     * 不支持 upsert 的数据库：先查询已存在的主键，再分别批量新增和批量修改（所有字段），不是原子操作
+     */
+    private int insertOrUpdate(List<T> rows) {
+        Set<Object> existing = new HashSet<>();
+        int chunkSize = Math.max(1, Math.min(BATCH_SIZE, this.dialect().maxParameters()));
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            Map<String, Object> param = new HashMap<>(3);
+            param.put("ids", rows.subList(from, Math.min(rows.size(), from + chunkSize)).stream()
+                    .map(this.modelInfo::idValue)
+                    .collect(Collectors.toList()));
+            for (Object row : this.session().selectList(this.listByIdsStatement(), param)) {
+                existing.add(Utils.idKey(this.modelInfo.idValue(row)));
+            }
+        }
+        List<T> inserts = new ArrayList<>();
+        List<T> updates = new ArrayList<>();
+        for (T row : rows) {
+            (existing.contains(Utils.idKey(this.modelInfo.idValue(row))) ? updates : inserts).add(row);
+        }
+        int inserted = inserts.isEmpty() ? 0 : sum(this.batchInsertCounts(inserts));
+        int updated = updates.isEmpty() ? 0 : this.batchUpdateByIdWithNull(updates);
+        if (inserted == Statement.SUCCESS_NO_INFO || updated == Statement.SUCCESS_NO_INFO) {
+            return Statement.SUCCESS_NO_INFO;
+        }
+        return inserted + updated;
+    }
+
+    private int batchUpsertChunks(List<T> rows) {
+        int columns = Math.max(MybatisScripts.upsertFields(this.modelInfo.fields(), this.modelInfo.idField()).size(), 1);
+        int chunkSize = Math.max(1, Math.min(BATCH_SIZE, this.dialect().maxParameters() / columns));
+        String msId = this.batchUpsertStatement();
+        int[] counts = new int[(rows.size() + chunkSize - 1) / chunkSize];
+        for (int i = 0; i < counts.length; i++) {
+            Map<String, Object> param = new HashMap<>(3);
+            param.put("list", rows.subList(i * chunkSize, Math.min(rows.size(), (i + 1) * chunkSize)));
+            counts[i] = this.written(this.session().update(msId, param));
+        }
+        return sum(counts);
     }
 
     @Override
@@ -100,11 +283,11 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
         if (id == null) {
             return false;
         }
-        String msId = this.addMappedStatement("deleteById", DELETE, Integer.class,
-                () -> String.format("<script>DELETE FROM %s WHERE %s</script>",
-                        this.modelName, MybatisScripts.idEqual(this.modelInfo))
-        );
-        return sqlSession.delete(msId, id) == 1;
+        this.evictId(id);
+        if (this.enqueue(UnitOfWork.Operation.DELETE_BY_ID, id)) {
+            return true;
+        }
+        return this.indexRemoved(this.written(this.session().delete(this.deleteByIdStatement(), this.idParam(id)))) == 1;
     }
 
     @Override
@@ -112,23 +295,182 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
         if (ids == null || ids.isEmpty()) {
             return false;
         }
-        String msId = this.addMappedStatement("deleteByIds", DELETE, Integer.class,
-                () -> String.format("<script>DELETE FROM %s WHERE \n %s</script>",
-                        this.modelName, MybatisScripts.idIn(this.modelInfo))
-        );
+        this.tableVersion.written();
+        ids.forEach(this::evictCached);
         Map<String, Object> param = new HashMap<>(3);
         param.put("ids", ids);
-        return sqlSession.delete(msId, param) > 0;
+        return this.indexRemoved(this.written(this.session().delete(this.deleteByIdsStatement(), param))) > 0;
     }
 
     @Override
     public boolean updateById(T model) {
-        return this.updateById(model, false);
+        this.evict(model);
+        if (this.enqueue(UnitOfWork.Operation.UPDATE_BY_ID, model)) {
+            return true;
+        }
+        return this.written(this.session().update(this.updateByIdStatement(false), model)) == 1;
     }
 
     @Override
     public boolean updateByIdWithNull(T model) {
-        return this.updateById(model, true);
+        this.evict(model);
+        return this.written(this.session().update(this.updateByIdStatement(true), model)) == 1;
+    }
+
+    @Override
+    public boolean updateChangedById(T model) {
+        ModelSnapshots snapshots = this.modelInfo.snapshots();
+        long changed = snapshots == null ? ModelSnapshots.NO_SNAPSHOT : snapshots.changedMask(model);
+        if (changed == ModelSnapshots.NO_SNAPSHOT) {
+            return this.updateById(model);
+        }
+        if (changed == 0L) {
+            return true;
+        }
+        Map<String, Object> param = new HashMap<>(3);
+        param.put(CHANGED_MODEL, model);
+        param.put(CHANGED_MASK, changed);
+        this.evict(model);
+        boolean result = this.written(this.session().update(this.updateChangedByIdStatement(snapshots), param)) == 1;
+        if (result) {
+            snapshots.refresh(model);
+        }
+        return result;
+    }
+
+    @Override
+    public int batchUpdateById(List<T> models) {
+        if (models.isEmpty()) {
+            return 0;
+        }
+        this.evict(models);
+        // 按非空字段分组，同组的 SQL 相同，可复用同一个 PreparedStatement
+        Map<BitSet, List<T>> groups = groupByPresentFields(this.modelInfo.getUpdateFields(), models);
+        // 没有可修改的字段
+        groups.remove(new BitSet());
+        return sum(this.executeBatch(this.updateByIdStatement(false), groups.values()));
+    }
+
+    @Override
+    public int batchUpdateByIdWithNull(List<T> models) {
+        if (models.isEmpty()) {
+            return 0;
+        }
+        this.evict(models);
+        return sum(this.executeBatch(this.updateByIdStatement(true), Collections.singletonList(models)));
+    }
+
+    @Override
+    public int batchSave(List<T> models) {
+        List<T> inserts = new ArrayList<>();
+        List<T> updates = new ArrayList<>();
+        for (T model : models) {
+            if (this.modelInfo.idValue(model) == null) {
+                inserts.add(model);
+            } else {
+                updates.add(model);
+            }
+        }
+        if (inserts.isEmpty()) {
+            return this.batchUpdateById(updates);
+        }
+        if (updates.isEmpty()) {
+            return sum(this.batchInsertCounts(inserts));
+        }
+        this.modelInfo.fillIdIfNull(inserts);
+        this.evict(inserts);
+        this.evict(updates);
+        // 新增（逐行单行 insert）和修改在同一个批处理会话中执行，一起提交
+        Map<String, Collection<? extends List<?>>> statements = new LinkedHashMap<>();
+        statements.put(this.batchInsertRowStatement(), Collections.singletonList(inserts));
+        Map<BitSet, List<T>> groups = groupByPresentFields(this.modelInfo.getUpdateFields(), updates);
+        groups.remove(new BitSet());
+        if (!groups.isEmpty()) {
+            statements.put(this.updateByIdStatement(false), groups.values());
+        }
+        return sum(this.indexInserts(inserts, () -> this.executeBatch(statements)));
+    }
+
+    @Override
+    public boolean incrementById(Serializable id, Sorter.SerializedGet<T, ? extends Number> getter, Number delta) {
+        return this.increment(id, getter, delta, null);
+    }
+
+    @Override
+    public boolean incrementById(Serializable id, Sorter.SerializedGet<T, ? extends Number> getter, Number delta, Number min) {
+        Assert.notNull(min, "min 不能为 null");
+        return this.increment(id, getter, delta, min);
+    }
+
+    private boolean increment(Serializable id, Sorter.SerializedGet<T, ? extends Number> getter, Number delta, Number min) {
+        Assert.notNull(delta, "delta 不能为 null");
+        if (id == null) {
+            return false;
+        }
+        this.evictId(id);
+        Map<String, Object> param = new HashMap<>(4);
+        param.put("id", id);
+        param.put("delta", delta);
+        param.put("min", min);
+        return this.written(this.session().update(this.incrementByIdStatement(Utils.getLambdaProperty(getter), min != null), param)) == 1;
+    }
+
+    @Override
+    public int updateByCondition(T values, T condition, boolean allowEmptyCondition) {
+        if (values == null || MaskedSqlSource.mask(this.modelInfo.getUpdateFields(), values) == 0) {
+            return 0;
+        }
+        this.checkCondition(condition, allowEmptyCondition);
+        this.evictAll();
+        Map<String, Object> param = new HashMap<>(3);
+        param.put(MybatisScripts.UPDATE_VALUES, values);
+        param.put(MybatisScripts.UPDATE_CONDITION, condition == null ? Collections.emptyMap() : condition);
+        return this.written(this.session().update(this.updateByConditionStatement(), param));
+    }
+
+    @Override
+    public int deleteByCondition(T condition, boolean allowEmptyCondition) {
+        this.checkCondition(condition, allowEmptyCondition);
+        this.evictAll();
+        return this.indexRemoved(this.written(this.session().delete(this.deleteByConditionStatement(), condition)));
+    }
+
+    @Override
+    public boolean existsById(Serializable id) {
+        if (id == null) {
+            return false;
+        }
+        Object cached = this.cached(this.identityMap(), id);
+        if (cached != null) {
+            return cached != IdentityMap.ABSENT;
+        }
+        boolean mightContain = this.existenceIndex == null || this.existenceIndex.mightContain(id);
+        if (!mightContain && this.existenceIndex.trustMisses()) {
+            return false;
+        }
+        boolean result = this.session().selectOne(this.existsByIdStatement(), this.idParam(id)) != null;
+        if (this.existenceIndex != null) {
+            this.existenceIndex.checked(id, mightContain, result);
+        }
+        return result;
+    }
+
+    /**
+     * 条件只有主键时同 existsById；有查询缓存或复制到内存时使用总数；否则按数据库方言查询一行（未识别的数据库为 COUNT）
+     */
+    @Override
+    public boolean existByCondition(T model) {
+        List<ModelField> fields = this.modelInfo.fields();
+        int idIndex = fields.indexOf(this.modelInfo.idField());
+        if (idIndex >= 0 && fields.size() <= MaskedSqlSource.MAX_FIELDS
+                && MaskedSqlSource.mask(fields, model) == 1L << idIndex) {
+            return this.existsById((Serializable) this.modelInfo.idValue(model));
+        }
+        String msId = this.queryCache == null && this.replica == null ? this.existByConditionStatement() : null;
+        if (msId == null) {
+            return this.countByCondition(model) > 0;
+        }
+        return this.session().selectOne(msId, model) != null;
     }
 
     @Override
@@ -136,12 +478,23 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
         if (id == null) {
             return Optional.empty();
         }
-        String msId = this.addMappedStatement("findById", SELECT, modelClass,
-                () -> String.format("<script>%s WHERE %s</script>",
-                        this.selectScript,
-                        MybatisScripts.idEqual(this.modelInfo))
-        );
-        return Optional.ofNullable(sqlSession.selectOne(msId, id));
+        IdentityMap identityMap = this.identityMap();
+        Object cached = this.cached(identityMap, id);
+        if (cached != null) {
+            return cached == IdentityMap.ABSENT ? Optional.empty() : Optional.of(modelClass.cast(cached));
+        }
+        long version = this.modelCache == null ? 0 : this.modelCache.version();
+        T result = this.session().selectOne(this.findByIdStatement(), this.idParam(id));
+        if (result != null && this.modelInfo.snapshots() != null) {
+            this.modelInfo.snapshots().capture(result);
+        }
+        if (identityMap != null) {
+            identityMap.put(modelClass, id, result);
+        }
+        if (result != null && this.modelCache != null) {
+            this.modelCache.put(result, version);
+        }
+        return Optional.ofNullable(result);
     }
 
     @Override
@@ -149,23 +502,99 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
         if (ids == null || ids.isEmpty()) {
             return Collections.emptyList();
         }
-        String msId = this.addMappedStatement("listByIds", SELECT, modelClass,
-                () -> String.format("<script>%s WHERE %s</script>",
-                        this.selectScript,
-                        MybatisScripts.idIn(this.modelInfo))
-        );
+        IdentityMap identityMap = this.identityMap();
+        if (identityMap == null && this.modelCache == null && this.replica == null) {
+            return this.selectByIds(ids);
+        }
+        // 主键 -> 模型对象（null 表示不存在），只查询标识映射和缓存中都没有的主键
+        Map<Object, T> found = new HashMap<>();
+        List<Serializable> missing = new ArrayList<>();
+        for (Serializable id : ids) {
+            Object key = id == null ? null : Utils.idKey(id);
+            if (key == null || found.containsKey(key)) {
+                continue;
+            }
+            Object cached = this.cached(identityMap, id);
+            if (cached == null) {
+                missing.add(id);
+            }
+            found.put(key, cached == null || cached == IdentityMap.ABSENT ? null : modelClass.cast(cached));
+        }
+        if (!missing.isEmpty()) {
+            if (identityMap != null) {
+                missing.forEach(id -> identityMap.put(modelClass, id, null));
+            }
+            long version = this.modelCache == null ? 0 : this.modelCache.version();
+            for (T model : this.selectByIds(missing)) {
+                Object id = this.modelInfo.idValue(model);
+                found.put(Utils.idKey(id), model);
+                if (identityMap != null) {
+                    identityMap.put(modelClass, id, model);
+                }
+                if (this.modelCache != null) {
+                    this.modelCache.put(model, version);
+                }
+            }
+        }
+        // 按参数顺序返回，同一主键只返回一次
+        List<T> result = new ArrayList<>(found.size());
+        for (Serializable id : ids) {
+            T model = id == null ? null : found.remove(Utils.idKey(id));
+            if (model != null) {
+                result.add(model);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 先从当前事务的标识映射中取，其次从内存中的表、实体缓存中取
+     *
+     * @return 模型对象；记录不存在时为 {@link IdentityMap#ABSENT}；都没有时为 null
+     */
+    private Object cached(IdentityMap identityMap, Object id) {
+        Object result = identityMap == null ? null : identityMap.get(modelClass, id);
+        if (result != null) {
+            return result;
+        }
+        if (this.replica != null) {
+            result = this.replica.get(id);
+        }
+        if (result == null && this.modelCache != null) {
+            result = this.modelCache.get(id);
+        }
+        if (result != null && result != IdentityMap.ABSENT) {
+            if (this.modelInfo.snapshots() != null) {
+                this.modelInfo.snapshots().capture(result);
+            }
+            if (identityMap != null) {
+                identityMap.put(modelClass, id, result);
+            }
+        }
+        return result;
+    }
+
+    private List<T> selectByIds(List<? extends Serializable> ids) {
         Map<String, Object> param = new HashMap<>(3);
         param.put("ids", ids);
-        return sqlSession.selectList(msId, param);
+        return this.track(this.session().selectList(this.listByIdsStatement(), param));
     }
 
     @Override
     public List<T> listByCondition(T model, Sorter... sorters) {
-        String script = this.selectByConditionScript + MybatisScripts.sortScript(this.modelInfo, sorters);
-        String finalScript = "<script>" + script + "</script>";
-        String msId = this.addMappedStatement("listByCondition_" + script.hashCode(),
-                SELECT, modelClass, () -> finalScript);
-        return sqlSession.selectList(msId, model);
+        String msId = this.listByConditionStatement();
+        if (this.replica != null) {
+            List<T> rows = this.replica.list(model, sorters);
+            if (rows != null) {
+                return this.track(rows);
+            }
+        }
+        Supplier<List<T>> query = () -> this.sorterRegistry.execute(sorters, () -> this.session().selectList(msId, model));
+        // 分页查询的结果取决于分页参数，不缓存
+        if (this.queryCache == null || (Utils.pageHelperPresent && Pages.started())) {
+            return this.track(query.get());
+        }
+        return this.track(this.queryCache.list(model, sorters, query));
     }
 
     @Override
@@ -181,36 +610,751 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
 
     @Override
     public long countByCondition(T model) {
-        String msId = this.addMappedStatement("countByCondition", SELECT, Long.class,
-                () -> String.format("<script>SELECT COUNT(*) FROM %s %s</script>",
+        Long count = this.replica == null ? null : this.replica.count(model);
+        if (count != null) {
+            return count;
+        }
+        Supplier<Long> query = () -> {
+            Long result = this.session().selectOne(this.countByConditionStatement(), model);
+            return result == null ? 0 : result;
+        };
+        // 分页插件会拦截已开始分页后的查询，结果取决于分页参数，不缓存
+        if (this.queryCache == null || (Utils.pageHelperPresent && Pages.started())) {
+            return query.get();
+        }
+        return this.queryCache.count(model, query);
+    }
+
+    /**
+     * 预先注册所有固定的 MappedStatement
+     * 避免首次调用时才解析脚本；模型类有 @BloomIndex 注解时在后台构建主键的布隆过滤器，有 @Replicated 注解时加载全表
+     *
+     * @return 耗时（毫秒）
+     */
+    public long warmUp() {
+        long start = System.nanoTime();
+        this.insertStatement();
+        this.batchInsertStatement();
+        if (BATCH_EXECUTOR) {
+            this.batchInsertRowStatement();
+        }
+        if (this.modelInfo.idField() != null) {
+            this.deleteByIdStatement();
+            this.deleteByIdsStatement();
+            this.findByIdStatement();
+            this.listByIdsStatement();
+            this.existsByIdStatement();
+            this.updateByIdStatement(false);
+            this.updateByIdStatement(true);
+            if (this.modelInfo.snapshots() != null) {
+                this.updateChangedByIdStatement(this.modelInfo.snapshots());
+            }
+        }
+        this.listByConditionStatement();
+        this.countByConditionStatement();
+        this.existByConditionStatement();
+        this.updateByConditionStatement();
+        this.deleteByConditionStatement();
+        this.sorterRegistry.sqlSource(SorterRegistry.SortKey.NONE);
+        if (this.existenceIndex != null && !this.existenceIndex.ready()) {
+            this.existenceIndex.rebuildAsync();
+        }
+        if (this.replica != null) {
+            this.replica.refresh();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * 数据库方言（首次使用时识别）
+     * 优先级：系统参数 simple.dialect > Configuration.databaseId > 数据库产品名
+     */
+    public Dialect dialect() {
+        Dialect result = this.dialect;
+        if (result == null) {
+            String name = System.getProperty("simple.dialect", "");
+            Configuration configuration = sqlSession.getConfiguration();
+            if (!"".equals(name)) {
+                result = Dialect.valueOf(name.toUpperCase(Locale.ENGLISH));
+            } else if (configuration.getDatabaseId() != null) {
+                result = Dialect.of(configuration.getDatabaseId());
+            } else {
+                try (Connection connection = configuration.getEnvironment().getDataSource().getConnection()) {
+                    result = Dialect.of(connection.getMetaData().getDatabaseProductName());
+                } catch (SQLException e) {
+                    result = Dialect.OTHER;
+                }
+            }
+            this.dialect = result;
+        }
+        return result;
+    }
+
+    /**
+     * 实体缓存（可查看命中率），模型类没有 @EntityCache 注解时为 null
+     */
+    public ModelCache modelCache() {
+        return this.modelCache;
+    }
+
+    /**
+     * 主键的存在性索引（可查看命中次数），模型类没有 @BloomIndex 注解时为 null
+     */
+    public ExistenceIndex existenceIndex() {
+        return this.existenceIndex;
+    }
+
+    /**
+     * 复制到内存的表（可查看命中次数、立即重新加载），模型类没有 @Replicated 注解时为 null
+     */
+    public ReplicatedTable replica() {
+        return this.replica;
+    }
+
+    /**
+     * 查询缓存（可查看命中率），模型类没有 @QueryCache 注解时为 null
+     */
+    public QueryResultCache queryCache() {
+        return this.queryCache;
+    }
+
+    /**
+     * listByCondition 的排序变体注册表（可查看命中/未命中次数）
+     */
+    public SorterRegistry sorterRegistry() {
+        return this.sorterRegistry;
+    }
+
+    private String insertStatement() {
+        List<ModelField> fields = this.modelInfo.getInsertFields();
+        return this.addMappedStatement("insert", INSERT, Integer.class,
+                () -> this.script("insert"),
+                fields,
+                presentFields -> String.format("INSERT INTO %s %s VALUES %s",
                         this.modelName,
-                        MybatisScripts.conditions(this.modelInfo))
+                        MybatisScripts.insertColumns(presentFields, false),
+                        MybatisScripts.insertProperties(presentFields, false, ""))
         );
-        Long result = sqlSession.selectOne(msId, model);
-        return result == null ? 0 : result;
     }
 
-    private boolean updateById(T model, boolean updateNull) {
+    private String batchInsertStatement() {
+        return this.addMappedStatement("batchInsert", INSERT, Integer.class, () -> this.script("batchInsert"));
+    }
+
+    /**
+     * JDBC 批处理使用的单行 insert（所有可新增字段，每行 SQL 相同）
+     */
+    private String batchInsertRowStatement() {
+        List<ModelField> fields = this.modelInfo.getInsertFields();
+        return this.addMappedStatement("batchInsertRow", INSERT, Integer.class,
+                () -> String.format("INSERT INTO %s %s VALUES %s",
+                        this.modelName,
+                        MybatisScripts.insertColumns(fields, false),
+                        MybatisScripts.insertProperties(fields, false, "")));
+    }
+
+    /**
+     * 通过 ExecutorType.BATCH 执行，每组按 batchSize 分批，每批 flush 一次
+     * 当前 SqlSession 为使用 SpringManagedTransactionFactory 的 SqlSessionTemplate 时与其共用同一个事务（Spring 事务中共用同一个连接），
+     * 否则在当前 SqlSession 中逐条执行
+     *
+     * @param groups 参数分组，同组参数生成的 SQL 相同
+     * @return 每批的影响行数，驱动未返回行数时为 {@link Statement#SUCCESS_NO_INFO}
+     */
+    private int[] executeBatch(String msId, Collection<? extends List<?>> groups) {
+        return this.executeBatch(Collections.<String, Collection<? extends List<?>>>singletonMap(msId, groups));
+    }
+
+    /**
+     * 在同一个批处理会话中按顺序执行多个 MappedStatement，最后一起提交
+     * 批处理会话需与调用方的 SqlSession 处于同一事务（见 {@link BatchSessions}），否则在调用方的 SqlSession 中逐条执行
+     *
+     * @param statements MappedStatement id -> 参数分组
+     * @return 每批的影响行数，驱动未返回行数时为 {@link Statement#SUCCESS_NO_INFO}
+     */
+    private int[] executeBatch(Map<String, Collection<? extends List<?>>> statements) {
+        List<Integer> result = new ArrayList<>();
+        SqlSession session = this.session();
+        SqlSession batchSession = Utils.mybatisSpringPresent ? BatchSessions.open(session) : null;
+        if (batchSession == null) {
+            for (Map.Entry<String, Collection<? extends List<?>>> statement : statements.entrySet()) {
+                for (List<?> params : statement.getValue()) {
+                    for (int from = 0; from < params.size(); from += BATCH_SIZE) {
+                        int count = 0;
+                        for (Object param : params.subList(from, Math.min(params.size(), from + BATCH_SIZE))) {
+                            count += session.update(statement.getKey(), param);
+                        }
+                        result.add(count);
+                    }
+                }
+            }
+        } else {
+            try (SqlSession batch = batchSession) {
+                for (Map.Entry<String, Collection<? extends List<?>>> statement : statements.entrySet()) {
+                    for (List<?> params : statement.getValue()) {
+                        for (int from = 0; from < params.size(); from += BATCH_SIZE) {
+                            for (Object param : params.subList(from, Math.min(params.size(), from + BATCH_SIZE))) {
+                                batch.update(statement.getKey(), param);
+                            }
+                            result.add(affectedRows(batch.flushStatements()));
+                        }
+                    }
+                }
+                batch.commit();
+            }
+            // 当前 SqlSession 的一级缓存感知不到批处理的修改
+            session.clearCache();
+        }
+        this.written(0);
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 按非空字段分组
+     *
+     * @return 非空字段（第 i 位对应 fields.get(i)） -> 模型列表
+     */
+    private static <M> Map<BitSet, List<M>> groupByPresentFields(List<ModelField> fields, List<M> models) {
+        Map<BitSet, List<M>> groups = new LinkedHashMap<>();
+        for (M model : models) {
+            BitSet shape = new BitSet(fields.size());
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).value(model) != null) {
+                    shape.set(i);
+                }
+            }
+            groups.computeIfAbsent(shape, key -> new ArrayList<>()).add(model);
+        }
+        return groups;
+    }
+
+    /**
+     * 影响行数合计，任意一批未返回行数时为 {@link Statement#SUCCESS_NO_INFO}
+     */
+    private static int sum(int[] counts) {
+        int result = 0;
+        for (int count : counts) {
+            if (count < 0) {
+                return Statement.SUCCESS_NO_INFO;
+            }
+            result += count;
+        }
+        return result;
+    }
+
+    private static int affectedRows(List<BatchResult> batchResults) {
+        int result = 0;
+        for (BatchResult batchResult : batchResults) {
+            for (int count : batchResult.getUpdateCounts()) {
+                if (count < 0) {
+                    return Statement.SUCCESS_NO_INFO;
+                }
+                result += count;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按数据库方言生成
+     *
+     * @see MybatisScripts#batchUpsert(Dialect, String, List, ModelField)
+     */
+    private String batchUpsertStatement() {
+        return this.addMappedStatement("batchUpsert", UPDATE, Integer.class, () -> {
+            ModelField idField = this.modelInfo.idField();
+            Assert.notNull(idField, String.format("%s 未配置 id 字段", modelClass.getName()));
+            return MybatisScripts.batchUpsert(this.dialect(), this.modelName, this.modelInfo.fields(), idField);
+        });
+    }
+
+    private String deleteByIdStatement() {
+        return this.addMappedStatement("deleteById", DELETE, Integer.class, () -> this.idScript("deleteById"));
+    }
+
+    private String deleteByIdsStatement() {
+        return this.addMappedStatement("deleteByIds", DELETE, Integer.class, () -> this.idScript("deleteByIds"));
+    }
+
+    private String updateByIdStatement(boolean updateNull) {
         String methodName = updateNull ? "updateByIdWithNull" : "updateById";
-        String msId = this.addMappedStatement(methodName, UPDATE, Integer.class,
-                () -> {
-                    ModelField idField = this.modelInfo.idField();
-                    Assert.notNull(idField, String.format("%s 未配置 id 字段", modelInfo.modelClass().getName()));
-                    String script = this.modelInfo.getUpdateFields().stream()
-                            .map(field -> {
-                                String set = MybatisScripts.columnEqual(field) + ",";
-                                return updateNull ? set : MybatisScripts.wrapperIf(field, set);
-                            })
-                            .collect(Collectors.joining("\n"));
-                    return String.format("<script>UPDATE %s \n <set>%s</set> \n WHERE %s</script>",
-                            this.modelName, script, MybatisScripts.columnEqual(idField));
-                });
-        return sqlSession.update(msId, model) == 1;
+        if (updateNull) {
+            return this.addMappedStatement(methodName, UPDATE, Integer.class, () -> this.idScript(methodName));
+        }
+        return this.addMappedStatement(methodName, UPDATE, Integer.class,
+                () -> this.idScript(methodName),
+                this.modelInfo.getUpdateFields(),
+                presentFields -> String.format("UPDATE %s %s WHERE %s",
+                        this.modelName,
+                        MybatisScripts.updateSet(presentFields),
+                        MybatisScripts.columnEqual(this.modelInfo.idField()))
+        );
+    }
+
+    private String findByIdStatement() {
+        return this.addMappedStatement("findById", SELECT, modelClass, () -> this.idScript("findById"));
+    }
+
+    private String listByIdsStatement() {
+        return this.addMappedStatement("listByIds", SELECT, modelClass, () -> this.idScript("listByIds"));
+    }
+
+    /**
+     * SELECT 1 FROM 表名 WHERE 主键 = #{id}
+     */
+    private String existsByIdStatement() {
+        return this.addMappedStatement("existsById", SELECT, Integer.class, () -> {
+            ModelField idField = this.modelInfo.idField();
+            Assert.notNull(idField, String.format("%s 未配置 id 字段", modelClass.getName()));
+            return String.format("SELECT 1 FROM %s WHERE %s", this.modelName, MybatisScripts.idEqual(idField));
+        });
+    }
+
+    /**
+     * 按数据库方言只查询一行，未识别的数据库为 null
+     */
+    private String existByConditionStatement() {
+        Dialect dialect = this.dialect();
+        if (dialect == Dialect.OTHER) {
+            return null;
+        }
+        return this.addMappedStatement("existByCondition", SELECT, Integer.class,
+                () -> "<script>" + MybatisScripts.existByCondition(dialect, this.modelName,
+                        MybatisScripts.conditions(this.modelInfo.fields())) + "</script>",
+                this.modelInfo.fields(),
+                presentFields -> MybatisScripts.existByCondition(dialect, this.modelName,
+                        MybatisScripts.where(presentFields))
+        );
+    }
+
+    /**
+     * 加载复制到内存的表：最多查询 limit 行；未识别的数据库不能限制行数，先查询总数，达到 limit 时不查询
+     *
+     * @return 行数达到 limit 时可能为 null
+     */
+    private List<?> listAll(int limit) {
+        if (this.dialect() == Dialect.OTHER) {
+            Long count = sqlSession.selectOne(this.countAllStatement());
+            if (count != null && count >= limit) {
+                return null;
+            }
+        }
+        return sqlSession.selectList(this.listAllStatement(limit));
+    }
+
+    /**
+     * SELECT 字段列表 FROM 表名 ORDER BY 主键 LIMIT limit
+     */
+    private String listAllStatement(int limit) {
+        return this.addMappedStatement("listAll", SELECT, modelClass,
+                () -> MybatisScripts.listAll(this.dialect(), this.modelName, this.modelInfo.fields(), this.modelInfo.idField(), limit));
+    }
+
+    /**
+     * SELECT COUNT(*) FROM 表名
+     */
+    private String countAllStatement() {
+        return this.addMappedStatement("countAll", SELECT, Long.class,
+                () -> "SELECT COUNT(*) FROM " + this.modelName);
+    }
+
+    /**
+     * SELECT 主键 FROM 表名
+     */
+    private String listIdsStatement() {
+        ModelField idField = this.modelInfo.idField();
+        return this.addMappedStatement("listIds", SELECT, idField.propertyType(),
+                () -> String.format("SELECT %s FROM %s", idField.column(), this.modelName));
+    }
+
+    /**
+     * 逐行读取全表主键（不经过工作单元，不缓存结果列表）
+     */
+    private void scanIds(Consumer<Object> consumer) {
+        sqlSession.select(this.listIdsStatement(), context -> consumer.accept(context.getResultObject()));
+    }
+
+    /**
+     * 所有排序变体共用一个 MappedStatement，由 {@link SorterRegistry} 按当前排序选择 SqlSource
+     */
+    private String listByConditionStatement() {
+        return this.addMappedStatement("listByCondition", SELECT, modelClass,
+                configuration -> this.sorterRegistry);
+    }
+
+    private SqlSource listByConditionSqlSource(SorterRegistry.SortKey sortKey) {
+        String sortScript = MybatisScripts.sortScript(this.modelInfo, sortKey);
+        return this.sqlSource(sqlSession.getConfiguration(),
+                () -> "<script>" + this.selectByConditionScript + sortScript + "</script>",
+                this.modelInfo.fields(),
+                presentFields -> this.selectScript + MybatisScripts.where(presentFields) + sortScript
+        );
+    }
+
+    private String countByConditionStatement() {
+        return this.addMappedStatement("countByCondition", SELECT, Long.class,
+                () -> this.script("countByCondition"),
+                this.modelInfo.fields(),
+                presentFields -> String.format("SELECT COUNT(*) FROM %s%s",
+                        this.modelName,
+                        MybatisScripts.where(presentFields))
+        );
+    }
+
+    /**
+     * 每个字段（及是否有最小值）一个 MappedStatement，均为静态 SQL
+     * UPDATE 表名 SET 字段 = 字段 + #{delta} WHERE 主键 = #{id} [AND 字段 + #{delta} >= #{min}]
+     */
+    private String incrementByIdStatement(String property, boolean hasMin) {
+        String methodName = (hasMin ? "incrementByIdWithMin." : "incrementById.") + property;
+        return this.addMappedStatement(methodName, UPDATE, Integer.class, () -> {
+            ModelField idField = this.modelInfo.idField();
+            Assert.notNull(idField, String.format("%s 未配置 id 字段", modelClass.getName()));
+            ModelField field = this.modelInfo.getUpdateFields().stream()
+                    .filter(f -> f.property().equals(property))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            String.format("%s 不存在可修改的字段 %s", modelClass.getName(), property)));
+            String sql = String.format("UPDATE %s SET %s = %s + #{delta} WHERE %s",
+                    this.modelName, field.column(), field.column(), MybatisScripts.idEqual(idField));
+            if (hasMin) {
+                sql += String.format(" AND %s + #{delta} >= #{min}", field.column());
+            }
+            return sql;
+        });
+    }
+
+    /**
+     * 按变更字段掩码缓存静态 SQL，修改为 null 的字段也会修改
+     * UPDATE 表名 SET 字段 = #{model.属性名},... WHERE 主键 = #{model.主键属性名}
+     */
+    private String updateChangedByIdStatement(ModelSnapshots snapshots) {
+        return this.addMappedStatement("updateChangedById", UPDATE, Integer.class, configuration -> {
+            ModelField idField = this.modelInfo.idField();
+            Assert.notNull(idField, String.format("%s 未配置 id 字段", modelClass.getName()));
+            return new MaskedSqlSource(configuration, Map.class, snapshots.fields(),
+                    param -> (Long) ((Map<?, ?>) param).get(CHANGED_MASK),
+                    presentFields -> String.format("UPDATE %s SET %s WHERE %s",
+                            this.modelName,
+                            presentFields.stream()
+                                    .map(field -> MybatisScripts.columnEqual(field, CHANGED_MODEL))
+                                    .collect(Collectors.joining(",")),
+                            MybatisScripts.columnEqual(idField, CHANGED_MODEL)));
+        });
+    }
+
+    /**
+     * 模型类开启脏字段跟踪时记录查询结果的快照
+     */
+    private List<T> track(List<T> models) {
+        ModelSnapshots snapshots = this.modelInfo.snapshots();
+        if (snapshots != null) {
+            snapshots.capture(models);
+        }
+        return models;
+    }
+
+    /**
+     * 参数为修改值和条件两个对象，只使用动态脚本
+     */
+    private String updateByConditionStatement() {
+        return this.addMappedStatement("updateByCondition", UPDATE, Integer.class,
+                () -> this.script("updateByCondition"));
+    }
+
+    private String deleteByConditionStatement() {
+        return this.addMappedStatement("deleteByCondition", DELETE, Integer.class,
+                () -> this.script("deleteByCondition"),
+                this.modelInfo.fields(),
+                presentFields -> String.format("DELETE FROM %s%s",
+                        this.modelName,
+                        MybatisScripts.where(presentFields))
+        );
+    }
+
+    /**
+     * 条件没有非空字段时（将修改或删除全表），除非显式允许，否则拒绝执行
+     */
+    private void checkCondition(T condition, boolean allowEmptyCondition) {
+        if (allowEmptyCondition) {
+            return;
+        }
+        Assert.isTrue(MaskedSqlSource.mask(this.modelInfo.fields(), condition) != 0,
+                String.format("%s 的条件为空，将作用于全表；如确需如此请设置 allowEmptyCondition", modelClass.getName()));
+    }
+
+    /**
+     * 当前事务的标识映射，未开启时为 null
+     */
+    private IdentityMap identityMap() {
+        return Utils.springTxPresent ? IdentityMap.current() : null;
+    }
+
+    /**
+     * 递增表的写版本号，并从当前事务的标识映射和实体缓存中移除修改的记录
+     */
+    private void evictId(Object id) {
+        this.tableVersion.written();
+        this.evictCached(id);
+    }
+
+    private void evictCached(Object id) {
+        IdentityMap identityMap = this.identityMap();
+        if (identityMap != null) {
+            identityMap.remove(modelClass, id);
+        }
+        if (this.modelCache != null) {
+            this.modelCache.invalidate(id);
+        }
+    }
+
+    private void evict(T model) {
+        this.tableVersion.written();
+        if (this.modelInfo.idField() != null) {
+            this.evictCached(this.modelInfo.idValue(model));
+        }
+    }
+
+    private void evict(Collection<T> models) {
+        this.tableVersion.written();
+        if (this.modelInfo.idField() != null && (this.modelCache != null || this.identityMap() != null)) {
+            for (T model : models) {
+                this.evictCached(this.modelInfo.idValue(model));
+            }
+        }
+    }
+
+    private void evictAll() {
+        this.tableVersion.written();
+        IdentityMap identityMap = this.identityMap();
+        if (identityMap != null) {
+            identityMap.clear(modelClass);
+        }
+        if (this.modelCache != null) {
+            this.modelCache.invalidateAll();
+        }
+    }
+
+    /**
+     * 新增前把主键加入存在性索引，SQL 执行完成后释放（在事务中时事务结束后释放）
+     * 自增主键在执行后加入
+     */
+    private <R> R indexInserts(List<T> models, Supplier<R> insert) {
+        if (this.existenceIndex == null) {
+            return insert.get();
+        }
+        List<Object> ids = new ArrayList<>(models.size());
+        List<T> autoIdModels = new ArrayList<>();
+        for (T model : models) {
+            Object id = this.modelInfo.idValue(model);
+            if (id == null) {
+                autoIdModels.add(model);
+            } else {
+                ids.add(id);
+            }
+        }
+        List<Object> pending = this.existenceIndex.add(ids);
+        try {
+            R result = insert.get();
+            if (!autoIdModels.isEmpty()) {
+                List<Object> generated = this.existenceIndex.add(autoIdModels.stream()
+                        .map(this.modelInfo::idValue)
+                        .collect(Collectors.toList()));
+                if (generated != null) {
+                    this.existenceIndex.release(generated);
+                }
+            }
+            return result;
+        } finally {
+            if (pending != null) {
+                this.existenceIndex.release(pending);
+            }
+        }
+    }
+
+    /**
+     * @return 删除的行数
+     */
+    private int indexRemoved(int count) {
+        if (this.existenceIndex != null) {
+            this.existenceIndex.removed(count);
+        }
+        return count;
+    }
+
+    /**
+     * 修改执行后再递增一次表的写版本号，并再移除一次实体缓存中修改的记录
+     * 修改前已递增、已移除，但不在事务中时，修改执行期间其他线程仍可能查到旧数据并写入查询缓存、实体缓存
+     *
+     * @return 影响行数
+     */
+    private int written(int count) {
+        this.tableVersion.written();
+        if (this.modelCache != null) {
+            this.modelCache.written();
+        }
+        return count;
+    }
+
+    /**
+     * 执行 SQL 使用的 SqlSession，先执行当前工作单元中暂存的操作
+     */
+    private SqlSession session() {
+        if (Utils.springTxPresent) {
+            UnitOfWork.flushCurrent();
+        }
+        return sqlSession;
     }
 
+    /**
+     * 当前事务开启了工作单元时暂存操作
+     *
+     * @return 是否已暂存
+     */
+    private boolean enqueue(UnitOfWork.Operation operation, Object item) {
+        if (!Utils.springTxPresent) {
+            return false;
+        }
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        return unitOfWork != null && unitOfWork.enqueue(this, operation, item);
+    }
+
+    /**
+     * 执行工作单元中暂存的一组操作
+     * insert：非空字段与所有可新增字段相同时多行 insert，否则按非空字段分组批处理；
+     * updateById：批处理；deleteById：IN 删除
+     *
+     * @throws IllegalStateException 影响行数与暂存的操作数不符（驱动未返回行数时不检查）
+     */
+    @SuppressWarnings("unchecked")
+    void flushQueued(UnitOfWork.Operation operation, List<Object> items) {
+        int expected = items.size(), affected;
+        switch (operation) {
+            case INSERT:
+                List<ModelField> fields = this.modelInfo.getInsertFields();
+                List<int[]> counts = new ArrayList<>();
+                List<List<T>> partial = new ArrayList<>();
+                for (Map.Entry<BitSet, List<T>> group : groupByPresentFields(fields, (List<T>) items).entrySet()) {
+                    if (group.getKey().cardinality() == fields.size()) {
+                        counts.add(this.batchInsertCounts(group.getValue()));
+                    } else {
+                        partial.add(group.getValue());
+                    }
+                }
+                if (!partial.isEmpty()) {
+                    counts.add(this.executeBatch(this.insertStatement(), partial));
+                }
+                affected = sum(counts.stream().flatMapToInt(Arrays::stream).toArray());
+                break;
+            case UPDATE_BY_ID:
+                // 没有可修改字段的不执行
+                expected -= groupByPresentFields(this.modelInfo.getUpdateFields(), items)
+                        .getOrDefault(new BitSet(), Collections.emptyList()).size();
+                affected = this.batchUpdateById((List<T>) items);
+                break;
+            case DELETE_BY_ID:
+                List<Object> ids = new ArrayList<>(items.stream()
+                        .collect(Collectors.toMap(Utils::idKey, id -> id, (a, b) -> a, LinkedHashMap::new))
+                        .values());
+                expected = ids.size();
+                affected = 0;
+                int chunkSize = Math.max(1, Math.min(BATCH_SIZE, this.dialect().maxParameters()));
+                for (int from = 0; from < ids.size(); from += chunkSize) {
+                    Map<String, Object> param = new HashMap<>(3);
+                    param.put("ids", ids.subList(from, Math.min(ids.size(), from + chunkSize)));
+                    affected += this.written(sqlSession.delete(this.deleteByIdsStatement(), param));
+                }
+                this.indexRemoved(affected);
+                break;
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+        if (affected != Statement.SUCCESS_NO_INFO && affected != expected) {
+            throw new IllegalStateException(String.format("工作单元执行 %s 的 %s 时影响行数为 %d，暂存了 %d 个",
+                    this.modelClass.getName(), operation, affected, expected));
+        }
+    }
+
+    /**
+     * 数组主键（如 byte[]）会被 MyBatis 包装为 {array: 主键}，需显式命名为 id
+     */
+    private Object idParam(Serializable id) {
+        return id.getClass().isArray() ? Collections.singletonMap("id", id) : id;
+    }
+
+    private String script(String methodName) {
+        return this.scripts.get(methodName);
+    }
+
+    /**
+     * 依赖主键的脚本
+     */
+    private String idScript(String methodName) {
+        String script = this.scripts.get(methodName);
+        Assert.notNull(script, String.format("%s 未配置 id 字段", modelInfo.modelClass().getName()));
+        return script;
+    }
+
+    /**
+     * 注册 MappedStatement
+     *
+     * @see #sqlSource(Configuration, Supplier, List, Function)
+     */
+    private String addMappedStatement(String methodName, SqlCommandType commandType, Class<?> resultType,
+                                      Supplier<String> script,
+                                      List<ModelField> maskFields,
+                                      Function<List<ModelField>, String> staticScript) {
+        return this.addMappedStatement(methodName, commandType, resultType,
+                configuration -> this.sqlSource(configuration, script, maskFields, staticScript));
+    }
 
     private String addMappedStatement(String methodName, SqlCommandType commandType, Class<?> resultType,
                                       Supplier<String> sql) {
+        return this.addMappedStatement(methodName, commandType, resultType,
+                configuration -> this.sqlSource(configuration, sql.get()));
+    }
+
+    /**
+     * 开启静态 SQL 时（-Dsimple.staticSql=true），按 maskFields 的非空掩码缓存静态 SQL，否则使用动态脚本
+     *
+     * @param script       动态脚本（含 if 标签）
+     * @param maskFields   计算非空掩码的字段列表
+     * @param staticScript 根据参与 SQL 的字段列表生成静态脚本
+     */
+    private SqlSource sqlSource(Configuration configuration,
+                                Supplier<String> script,
+                                List<ModelField> maskFields,
+                                Function<List<ModelField>, String> staticScript) {
+        if (STATIC_SQL && MaskedSqlSource.supports(maskFields)) {
+            return new MaskedSqlSource(configuration, modelClass, maskFields, staticScript);
+        }
+        return this.sqlSource(configuration, script.get());
+    }
+
+    private SqlSource sqlSource(Configuration configuration, String script) {
+        return configuration
+                .getDefaultScriptingLanguageInstance()
+                .createSqlSource(configuration, script, null);
+    }
+
+    /**
+     * 注册 MappedStatement
+     * 同一个 methodName 只会构建一次，并发调用时其他线程等待构建完成
+     *
+     * @return MappedStatement id
+     */
+    private String addMappedStatement(String methodName, SqlCommandType commandType, Class<?> resultType,
+                                      Function<Configuration, SqlSource> sqlSourceBuilder) {
+        String msId = this.statements.get(methodName);
+        if (msId != null) {
+            return msId;
+        }
+        return this.statements.computeIfAbsent(methodName,
+                key -> this.registerMappedStatement(key, commandType, resultType, sqlSourceBuilder));
+    }
+
+    private String registerMappedStatement(String methodName, SqlCommandType commandType, Class<?> resultType,
+                                           Function<Configuration, SqlSource> sqlSourceBuilder) {
         String msId = String.format("%s.%s.%s", modelClass.getName(), methodName, commandType);
         Configuration configuration = sqlSession.getConfiguration();
         if (configuration.hasStatement(msId, false)) {
@@ -225,9 +1369,10 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
             keyGenerator = new Jdbc3KeyGenerator();
         }
 
-        SqlSource sqlSource = configuration
-                .getDefaultScriptingLanguageInstance()
-                .createSqlSource(configuration, sql.get(), null);
+        if (ROW_MAPPER && resultType == modelClass) {
+            resultType = ModelRowMapper.register(configuration, this.modelInfo);
+        }
+        SqlSource sqlSource = sqlSourceBuilder.apply(configuration);
         MappedStatement ms = new MappedStatement.Builder(configuration, msId, sqlSource, commandType)
                 .resultMaps(Collections.singletonList(
                         new ResultMap.Builder(configuration, msId, resultType, new ArrayList<>()).build()
@@ -236,7 +1381,12 @@ public class MybatisBaseMapper<T> implements BaseMapper<T> {
                 .keyColumn(keyColumn)
                 .keyProperty(keyProperty)
                 .build();
-        configuration.addMappedStatement(ms);
+        // Configuration 内部为非线程安全的 HashMap，多个 mapper 并发注册时需加锁
+        synchronized (configuration) {
+            if (!configuration.hasStatement(msId, false)) {
+                configuration.addMappedStatement(ms);
+            }
+        }
         return msId;
     }
 
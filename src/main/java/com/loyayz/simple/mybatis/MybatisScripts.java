@@ -1,20 +1,189 @@
 package com.loyayz.simple.mybatis;
 
-import com.loyayz.simple.Sorter;
 import com.loyayz.simple.helper.ModelField;
 import com.loyayz.simple.helper.ModelInfo;
-import com.loyayz.simple.helper.Utils;
-import org.springframework.util.Assert;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * @author loyayz (loyayz@foxmail.com)
  */
-final class MybatisScripts {
+public final class MybatisScripts {
+    /**
+     * updateByCondition 参数中修改值、条件的参数名
+     */
+    static final String UPDATE_VALUES = "values";
+    static final String UPDATE_CONDITION = "condition";
+
+    /**
+     * 生成固定的 SQL 脚本（编译期生成模型信息时也会调用）
+     * <p>
+     * select：SELECT 字段列表 FROM 表名
+     * selectByCondition：SELECT 字段列表 FROM 表名 where 条件
+     * insert、batchInsert、countByCondition、updateByCondition、deleteByCondition
+     * 有主键时：deleteById、deleteByIds、updateById、updateByIdWithNull、findById、listByIds
+     *
+     * @param modelName 模型名（表名）
+     * @param fields    字段列表
+     * @param idField   主键字段（可以为 null）
+     * @return 方法名 -> 脚本
+     */
+    public static Map<String, String> fixedScripts(String modelName, List<ModelField> fields, ModelField idField) {
+        List<ModelField> insertFields = fields.stream().filter(ModelField::insertable).collect(Collectors.toList());
+        List<ModelField> updateFields = fields.stream().filter(ModelField::updatable).collect(Collectors.toList());
+        String select = String.format("SELECT %s FROM %s ", selectColumns(fields), modelName);
+
+        Map<String, String> scripts = new LinkedHashMap<>();
+        scripts.put("select", select);
+        scripts.put("selectByCondition", select + conditions(fields));
+        scripts.put("insert", String.format("<script>INSERT INTO %s \n %s VALUES \n %s</script>",
+                modelName, insertColumns(insertFields, true), insertProperties(insertFields, true, "")));
+        String itemPrefix = "ent";
+        String batchProperties = String.format("<foreach collection=\"list\" item=\"%s\" separator=\",\">%s</foreach>",
+                itemPrefix, insertProperties(insertFields, false, itemPrefix));
+        scripts.put("batchInsert", String.format("<script>INSERT INTO %s \n %s VALUES \n %s</script>",
+                modelName, insertColumns(insertFields, false), batchProperties));
+        scripts.put("countByCondition", String.format("<script>SELECT COUNT(*) FROM %s %s</script>",
+                modelName, conditions(fields)));
+        String conditionSets = updateFields.stream()
+                .map(field -> wrapperIf(field, columnEqual(field, UPDATE_VALUES) + ",", UPDATE_VALUES))
+                .collect(Collectors.joining("\n"));
+        scripts.put("updateByCondition", String.format("<script>UPDATE %s \n <set>%s</set> \n %s</script>",
+                modelName, conditionSets, conditions(fields, UPDATE_CONDITION)));
+        scripts.put("deleteByCondition", String.format("<script>DELETE FROM %s %s</script>",
+                modelName, conditions(fields)));
+        if (idField == null) {
+            return scripts;
+        }
+        scripts.put("deleteById", String.format("<script>DELETE FROM %s WHERE %s</script>",
+                modelName, idEqual(idField)));
+        scripts.put("deleteByIds", String.format("<script>DELETE FROM %s WHERE \n %s</script>",
+                modelName, idIn(idField)));
+        for (boolean updateNull : new boolean[]{false, true}) {
+            String sets = updateFields.stream()
+                    .map(field -> {
+                        String set = columnEqual(field) + ",";
+                        return updateNull ? set : wrapperIf(field, set);
+                    })
+                    .collect(Collectors.joining("\n"));
+            scripts.put(updateNull ? "updateByIdWithNull" : "updateById",
+                    String.format("<script>UPDATE %s \n <set>%s</set> \n WHERE %s</script>",
+                            modelName, sets, columnEqual(idField)));
+        }
+        scripts.put("findById", String.format("<script>%s WHERE %s</script>", select, idEqual(idField)));
+        scripts.put("listByIds", String.format("<script>%s WHERE %s</script>", select, idIn(idField)));
+        return scripts;
+    }
+
+    /**
+     * 批量新增或修改（所有字段）的脚本，按主键判断记录是否存在
+     * <p>
+     * MYSQL：INSERT ... VALUES ... ON DUPLICATE KEY UPDATE 字段 = VALUES(字段)
+     * POSTGRESQL、SQLITE：INSERT ... VALUES ... ON CONFLICT (主键) DO UPDATE SET 字段 = EXCLUDED.字段
+     * H2：MERGE INTO ... KEY (主键) VALUES ...
+     * SQLSERVER：MERGE INTO ... USING (VALUES ...) ... WHEN MATCHED THEN UPDATE ... WHEN NOT MATCHED THEN INSERT ...
+     * <p>
+     * 字段为可新增的字段，总是包含主键字段（自增主键也包含，否则无法按主键判断记录是否存在）
+     * 其他数据库不支持，由 mapper 先查询已存在的主键，再分别新增和修改
+     *
+     * @param fields  字段列表
+     * @param idField 主键字段
+     */
+    static String batchUpsert(Dialect dialect, String modelName, List<ModelField> fields, ModelField idField) {
+        List<ModelField> insertFields = upsertFields(fields, idField);
+        List<String> updateColumns = insertFields.stream()
+                .filter(field -> field.updatable() && field != idField)
+                .map(ModelField::column)
+                .collect(Collectors.toList());
+        String itemPrefix = "ent";
+        String values = String.format("<foreach collection=\"list\" item=\"%s\" separator=\",\">%s</foreach>",
+                itemPrefix, insertProperties(insertFields, false, itemPrefix));
+        String columns = insertColumns(insertFields, false);
+        String id = idField.column();
+        switch (dialect) {
+            case MYSQL:
+                return String.format("<script>INSERT INTO %s \n %s VALUES \n %s \n ON DUPLICATE KEY UPDATE %s</script>",
+                        modelName, columns, values, updateColumns.isEmpty() ? id + " = " + id :
+                                updateColumns.stream()
+                                        .map(column -> String.format("%s = VALUES(%s)", column, column))
+                                        .collect(Collectors.joining(",")));
+            case POSTGRESQL:
+            case SQLITE:
+                return String.format("<script>INSERT INTO %s \n %s VALUES \n %s \n ON CONFLICT (%s) %s</script>",
+                        modelName, columns, values, id, updateColumns.isEmpty() ? "DO NOTHING" :
+                                updateColumns.stream()
+                                        .map(column -> String.format("%s = EXCLUDED.%s", column, column))
+                                        .collect(Collectors.joining(",", "DO UPDATE SET ", "")));
+            case H2:
+                return String.format("<script>MERGE INTO %s \n %s KEY (%s) VALUES \n %s</script>",
+                        modelName, columns, id, values);
+            case SQLSERVER:
+                String sourceColumns = insertFields.stream()
+                        .map(field -> "s." + field.column())
+                        .collect(Collectors.joining(","));
+                String matched = updateColumns.isEmpty() ? "" : updateColumns.stream()
+                        .map(column -> String.format("%s = s.%s", column, column))
+                        .collect(Collectors.joining(",", " WHEN MATCHED THEN UPDATE SET ", ""));
+                return String.format("<script>MERGE INTO %s AS t USING (VALUES \n %s) AS s %s ON t.%s = s.%s%s" +
+                                " WHEN NOT MATCHED THEN INSERT %s VALUES (%s);</script>",
+                        modelName, values, columns, id, id, matched, columns, sourceColumns);
+            default:
+                throw new UnsupportedOperationException(String.format("数据库方言 %s 不支持 upsert", dialect));
+        }
+    }
+
+    /**
+     * upsert 的字段：可新增的字段和主键字段
+     */
+    static List<ModelField> upsertFields(List<ModelField> fields, ModelField idField) {
+        return fields.stream()
+                .filter(field -> field.insertable() || field == idField)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查询是否存在记录（最多返回一行）
+     * <p>
+     * SQLSERVER：SELECT TOP 1 1 FROM 表名 条件
+     * 其他已识别的数据库：SELECT 1 FROM 表名 条件 LIMIT 1
+     *
+     * @param where 条件脚本（where 标签或静态条件）
+     * @return 未识别的数据库（OTHER）时为 null
+     */
+    static String existByCondition(Dialect dialect, String modelName, String where) {
+        switch (dialect) {
+            case SQLSERVER:
+                return String.format("SELECT TOP 1 1 FROM %s %s", modelName, where);
+            case OTHER:
+                return null;
+            default:
+                return String.format("SELECT 1 FROM %s %s LIMIT 1", modelName, where);
+        }
+    }
+
+    /**
+     * 按主键顺序查询全表（最多返回 limit 行）
+     * <p>
+     * SQLSERVER：SELECT TOP limit 字段列表 FROM 表名 ORDER BY 主键
+     * 其他已识别的数据库：SELECT 字段列表 FROM 表名 ORDER BY 主键 LIMIT limit
+     * 未识别的数据库（OTHER）：SELECT 字段列表 FROM 表名 ORDER BY 主键（不限制行数）
+     */
+    static String listAll(Dialect dialect, String modelName, List<ModelField> fields, ModelField idField, int limit) {
+        switch (dialect) {
+            case SQLSERVER:
+                return String.format("SELECT TOP %d %s FROM %s ORDER BY %s",
+                        limit, selectColumns(fields), modelName, idField.column());
+            case OTHER:
+                return String.format("SELECT %s FROM %s ORDER BY %s", selectColumns(fields), modelName, idField.column());
+            default:
+                return String.format("SELECT %s FROM %s ORDER BY %s LIMIT %d",
+                        selectColumns(fields), modelName, idField.column(), limit);
+        }
+    }
 
     /**
      * 转换成 if 标签的脚本片段
@@ -23,11 +192,18 @@ final class MybatisScripts {
      * @return <if test="属性名 != null">script</if>
      */
     static String wrapperIf(ModelField field, String script) {
+        return wrapperIf(field, script, "");
+    }
+
+    /**
+     * @param prefix 参数名前缀，非空时为 <if test="prefix.属性名 != null">script</if>
+     */
+    static String wrapperIf(ModelField field, String script, String prefix) {
         Class<?> propertyType = field.propertyType();
         if (propertyType.isPrimitive()) {
             return script;
         }
-        String property = String.format("%s != null", field.property());
+        String property = String.format("%s != null", propertyName(field, prefix));
         return String.format("<if test=\"%s\">%s</if>", property, script);
     }
 
@@ -116,59 +292,98 @@ final class MybatisScripts {
      * ...
      * </where>
      */
-    static String conditions(ModelInfo info) {
-        String result = info.fields().stream()
+    static String conditions(List<ModelField> fields) {
+        return conditions(fields, "");
+    }
+
+    /**
+     * @param prefix 参数名前缀，非空时为 <if test="prefix.属性名 != null">AND 字段名 = #{prefix.属性名}</if>
+     */
+    static String conditions(List<ModelField> fields, String prefix) {
+        String result = fields.stream()
                 .map(field -> {
-                    String script = " AND " + columnEqual(field);
-                    return wrapperIf(field, script);
+                    String script = " AND " + columnEqual(field, prefix);
+                    return wrapperIf(field, script, prefix);
                 })
                 .collect(Collectors.joining("\n"));
         return "<where>" + result + "</where>";
     }
 
+    /**
+     * 字段列表转为条件语句（不含 if 标签）
+     *
+     * @return WHERE 字段名 = #{属性名} AND 字段名 = #{属性名} ...
+     * 字段列表为空时返回空字符串
+     */
+    static String where(List<ModelField> fields) {
+        if (fields.isEmpty()) {
+            return "";
+        }
+        return fields.stream()
+                .map(MybatisScripts::columnEqual)
+                .collect(Collectors.joining(" AND ", " WHERE ", ""));
+    }
+
+    /**
+     * 字段列表转为修改语句（不含 if 标签）
+     *
+     * @return SET 字段名 = #{属性名},字段名 = #{属性名} ...
+     */
+    static String updateSet(List<ModelField> fields) {
+        return fields.stream()
+                .map(MybatisScripts::columnEqual)
+                .collect(Collectors.joining(",", "SET ", ""));
+    }
+
     /**
      * 字段转为相等的脚本
      *
      * @return 字段名 = #{属性名}
      */
     static String columnEqual(ModelField field) {
-        return String.format("%s = #{%s}", field.column(), field.property());
+        return columnEqual(field, "");
+    }
+
+    static String columnEqual(ModelField field, String prefix) {
+        return String.format("%s = #{%s}", field.column(), propertyName(field, prefix));
+    }
+
+    private static String propertyName(ModelField field, String prefix) {
+        return prefix.isEmpty() ? field.property() : prefix + "." + field.property();
     }
 
-    static String idEqual(ModelInfo info) {
-        ModelField idField = info.idField();
-        Assert.notNull(idField, String.format("%s 未配置 id 字段", info.modelClass().getName()));
+    static String idEqual(ModelField idField) {
         return String.format("%s=#{id}", idField.column());
     }
 
-    static String idIn(ModelInfo info) {
-        ModelField idField = info.idField();
-        Assert.notNull(idField, String.format("%s 未配置 id 字段", info.modelClass().getName()));
+    static String idIn(ModelField idField) {
         String foreachScript = "<foreach collection=\"ids\" item=\"id\" open=\"(\" separator=\",\" close=\")\">#{id}</foreach>";
         return String.format("%s IN \n %s", idField.column(), foreachScript);
     }
 
     /**
      * 排序脚本
+     * 忽略模型中不存在的属性
+     *
+     * @return ORDER BY 字段名 asc,字段名 desc
+     * 无排序时返回空字符串
      */
-    static String sortScript(ModelInfo info, Sorter... sorters) {
-        if (sorters == null || sorters.length == 0) {
+    static String sortScript(ModelInfo info, SorterRegistry.SortKey sortKey) {
+        List<ModelField> fields = info.fields();
+        List<String> sorts = new ArrayList<>();
+        for (int i = 0; i < sortKey.size(); i++) {
+            String property = sortKey.property(i);
+            String sortType = sortKey.asc(i) ? "asc" : "desc";
+            for (ModelField field : fields) {
+                if (field.property().equals(property)) {
+                    sorts.add(field.column() + " " + sortType);
+                    break;
+                }
+            }
+        }
+        if (sorts.isEmpty()) {
             return "";
         }
-        List<ModelField> fields = info.fields();
-        String script = Arrays.stream(sorters)
-                .map(sorter -> {
-                    String property = Utils.getLambdaProperty(sorter);
-                    String sortType = sorter.orderByAsc() ? "asc" : "desc";
-                    for (ModelField field : fields) {
-                        if (field.property().equals(property)) {
-                            return field.column() + " " + sortType;
-                        }
-                    }
-                    return null;
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.joining(","));
-        return " ORDER BY " + script;
+        return " ORDER BY " + String.join(",", sorts);
     }
 }
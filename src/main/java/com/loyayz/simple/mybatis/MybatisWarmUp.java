@@ -0,0 +1,58 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.BaseMapper;
+import com.loyayz.simple.helper.ModelHelper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import java.util.*;
+
+/**
+ * 启动时预先注册模型的 MappedStatement
+ * 在所有单例初始化完成（SqlSession 可用）后执行
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ * @see com.loyayz.simple.annotation.ModelScan#warmUp()
+ */
+public class MybatisWarmUp implements SmartInitializingSingleton {
+    private static final Log log = LogFactory.getLog(MybatisWarmUp.class);
+
+    private final Collection<Class<?>> modelClasses;
+    /**
+     * 各模型预热耗时（毫秒）
+     */
+    private final Map<Class<?>, Long> costs = new LinkedHashMap<>();
+
+    public MybatisWarmUp(Collection<Class<?>> modelClasses) {
+        this.modelClasses = modelClasses;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long total = 0;
+        for (Class<?> modelClass : this.modelClasses) {
+            BaseMapper<?> mapper = ModelHelper.mapper(modelClass);
+            if (!(mapper instanceof MybatisBaseMapper)) {
+                continue;
+            }
+            long cost = ((MybatisBaseMapper<?>) mapper).warmUp();
+            this.costs.put(modelClass, cost);
+            total += cost;
+            if (log.isInfoEnabled()) {
+                log.info(String.format("Warmed up %s in %d ms", modelClass.getName(), cost));
+            }
+        }
+        if (log.isInfoEnabled()) {
+            log.info(String.format("Warmed up %d models in %d ms", this.costs.size(), total));
+        }
+    }
+
+    /**
+     * 各模型预热耗时（毫秒）
+     */
+    public Map<Class<?>, Long> costs() {
+        return Collections.unmodifiableMap(this.costs);
+    }
+
+}
@@ -40,4 +40,11 @@ public final class Pages {
         return result;
     }
 
+    /**
+     * 当前线程是否已开始分页（下一条查询会被 PageHelper 改写）
+     */
+    static boolean started() {
+        return PageHelper.getLocalPage() != null;
+    }
+
 }
@@ -0,0 +1,191 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.Sorter;
+import com.loyayz.simple.annotation.QueryCache;
+import com.loyayz.simple.helper.ModelField;
+import com.loyayz.simple.helper.ModelInfo;
+import com.loyayz.simple.helper.TinyLfuCache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 模型的查询缓存（{@link QueryCache}）
+ * <p>
+ * 键为（查询类型、条件的非空字段掩码、非空字段值、排序描述），值记录查询前表的写版本号（{@link TableVersion}），
+ * 读取时版本号不同即视为未命中，表的任何修改都使该表的所有缓存失效而无需扫描键。
+ * 缓存和返回的都是模型对象的副本。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class QueryResultCache {
+    private final ModelInfo modelInfo;
+    private final List<ModelField> fields;
+    private final TableVersion tableVersion;
+    private final int maxRows;
+    private final TinyLfuCache<Key, Entry> cache;
+
+    private QueryResultCache(ModelInfo modelInfo, TableVersion tableVersion, QueryCache config) {
+        this.modelInfo = modelInfo;
+        this.fields = modelInfo.fields();
+        this.tableVersion = tableVersion;
+        this.maxRows = config.maxRows();
+        this.cache = new TinyLfuCache<>(config.maximumSize(), config.ttlSeconds() * 1000);
+        tableVersion.cached();
+    }
+
+    /**
+     * 模型类有 @QueryCache 注解且字段数不超过掩码上限时创建
+     */
+    static QueryResultCache of(ModelInfo modelInfo, TableVersion tableVersion) {
+        QueryCache config = modelInfo.modelClass().getAnnotation(QueryCache.class);
+        if (config == null || modelInfo.fields().size() > MaskedSqlSource.MAX_FIELDS) {
+            return null;
+        }
+        return new QueryResultCache(modelInfo, tableVersion, config);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> List<T> list(Object condition, Sorter[] sorters, Supplier<List<T>> query) {
+        if (!this.tableVersion.readable()) {
+            return query.get();
+        }
+        Key key = this.key(condition, SorterRegistry.SortKey.of(sorters));
+        Entry entry = this.cache.get(key, this::current);
+        if (entry != null) {
+            return (List<T>) this.copy((List<Object>) entry.value);
+        }
+        long version = this.tableVersion.get();
+        List<T> result = query.get();
+        if (result.size() <= this.maxRows) {
+            this.put(key, new Entry(version, this.copy((List<Object>) result)));
+        }
+        return result;
+    }
+
+    long count(Object condition, Supplier<Long> query) {
+        if (!this.tableVersion.readable()) {
+            return query.get();
+        }
+        Key key = this.key(condition, null);
+        Entry entry = this.cache.get(key, this::current);
+        if (entry != null) {
+            return (Long) entry.value;
+        }
+        long version = this.tableVersion.get();
+        long result = query.get();
+        this.put(key, new Entry(version, result));
+        return result;
+    }
+
+    /**
+     * 命中率等统计信息（表修改后失效的查询计为未命中）
+     */
+    public TinyLfuCache.Stats stats() {
+        return this.cache.stats();
+    }
+
+    /**
+     * 清空缓存（直接使用 SqlSession 或自定义 mapper 修改数据后调用）
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    private void put(Key key, Entry entry) {
+        // 查询期间表已修改（或当前事务修改了表）时不写入
+        if (entry.version == this.tableVersion.get() && this.tableVersion.readable()) {
+            this.cache.put(key, entry);
+        }
+    }
+
+    private boolean current(Entry entry) {
+        return entry.version == this.tableVersion.get();
+    }
+
+    private List<Object> copy(List<Object> models) {
+        List<Object> result = new ArrayList<>(models.size());
+        for (Object model : models) {
+            result.add(this.modelInfo.copy(model));
+        }
+        return result;
+    }
+
+    private Key key(Object condition, SorterRegistry.SortKey sortKey) {
+        long mask = MaskedSqlSource.mask(this.fields, condition);
+        Object[] values = new Object[Long.bitCount(mask)];
+        for (int i = 0, j = 0; i < this.fields.size(); i++) {
+            if ((mask & (1L << i)) != 0) {
+                values[j++] = keyValue(this.fields.get(i).value(condition));
+            }
+        }
+        return new Key(sortKey, mask, values);
+    }
+
+    /**
+     * 可变的字段值复制一份，避免调用方修改条件对象后影响缓存的键
+     */
+    private static Object keyValue(Object value) {
+        if (value instanceof byte[]) {
+            return ByteBuffer.wrap(((byte[]) value).clone());
+        } else if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        return value;
+    }
+
+    private static final class Entry {
+        private final long version;
+        /**
+         * 模型对象副本列表或总数
+         */
+        private final Object value;
+
+        private Entry(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    private static final class Key {
+        /**
+         * 排序描述，countByCondition 为 null
+         */
+        private final SorterRegistry.SortKey sortKey;
+        private final long mask;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(SorterRegistry.SortKey sortKey, long mask, Object[] values) {
+            this.sortKey = sortKey;
+            this.mask = mask;
+            this.values = values;
+            this.hash = 31 * (31 * (sortKey == null ? 0 : sortKey.hashCode()) + Long.hashCode(mask)) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.hash == other.hash
+                    && this.mask == other.mask
+                    && (this.sortKey == null ? other.sortKey == null : this.sortKey.equals(other.sortKey))
+                    && Arrays.equals(this.values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+}
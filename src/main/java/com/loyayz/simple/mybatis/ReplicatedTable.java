@@ -0,0 +1,355 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.Sorter;
+import com.loyayz.simple.annotation.Replicated;
+import com.loyayz.simple.helper.ModelField;
+import com.loyayz.simple.helper.ModelInfo;
+import com.loyayz.simple.helper.Utils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * 复制到内存的表（{@link Replicated}）
+ * <p>
+ * 全表加载为不可变的快照，按主键和条件字段建立哈希索引（字段首次作为条件时建立），
+ * 查询时取条件字段中匹配行数最少的索引，再逐行比较其余字段；返回的都是模型对象的副本。
+ * <p>
+ * 快照记录加载前表的写版本号（{@link TableVersion}），通过 mapper 修改该表后版本号改变，下次查询时重新加载；
+ * 其他线程正在加载时查询数据库。超过 refreshSeconds 时在后台重新加载，期间仍使用旧快照。
+ * 当前事务修改过该表、正在分页查询、行数超过 maxRows 时查询数据库（超过时记录版本号，表修改或超过 refreshSeconds 后再尝试加载）。
+ * 加载时最多查询 maxRows + 1 行，超过时不再读取其余的行。
+ * <p>
+ * 与数据库的差异：字符串按 Java 的 equals、compareTo 比较（区分大小写，不使用数据库排序规则）；
+ * 排序时升序 null 在前、降序 null 在后；没有排序时按主键顺序返回。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class ReplicatedTable {
+    private static final Log log = LogFactory.getLog(ReplicatedTable.class);
+    private static final ExecutorService LOADER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "simple-replica-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ModelInfo modelInfo;
+    private final List<ModelField> fields;
+    private final TableVersion tableVersion;
+    private final long refreshMillis;
+    private final int maxRows;
+    /**
+     * 查询全表：参数为最多查询的行数，行数超过时可只返回该行数或返回 null
+     */
+    private final IntFunction<List<?>> loader;
+    private volatile Snapshot snapshot;
+    private final ReentrantLock loading = new ReentrantLock();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+
+    private ReplicatedTable(ModelInfo modelInfo, TableVersion tableVersion, Replicated config, IntFunction<List<?>> loader) {
+        this.modelInfo = modelInfo;
+        this.fields = modelInfo.fields();
+        this.tableVersion = tableVersion;
+        this.refreshMillis = config.refreshSeconds() * 1000;
+        this.maxRows = config.maxRows();
+        this.loader = loader;
+        tableVersion.cached();
+    }
+
+    /**
+     * 模型类有 @Replicated 注解、有主键且字段数不超过掩码上限时创建
+     */
+    static ReplicatedTable of(ModelInfo modelInfo, TableVersion tableVersion, IntFunction<List<?>> loader) {
+        Replicated config = modelInfo.modelClass().getAnnotation(Replicated.class);
+        if (config == null || modelInfo.idField() == null || modelInfo.fields().size() > MaskedSqlSource.MAX_FIELDS) {
+            return null;
+        }
+        return new ReplicatedTable(modelInfo, tableVersion, config, loader);
+    }
+
+    /**
+     * @return 模型对象副本；记录不存在时为 {@link IdentityMap#ABSENT}；不可用时为 null
+     */
+    Object get(Object id) {
+        Snapshot current = this.current();
+        if (current == null) {
+            return null;
+        }
+        Object row = current.byId.get(Utils.idKey(id));
+        return row == null ? IdentityMap.ABSENT : this.modelInfo.copy(row);
+    }
+
+    /**
+     * @return 模型对象副本列表，不可用时为 null
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> list(Object condition, Sorter[] sorters) {
+        Snapshot current = this.current();
+        if (current == null) {
+            return null;
+        }
+        List<Object> rows = this.filter(current, condition);
+        SorterRegistry.SortKey sortKey = SorterRegistry.SortKey.of(sorters);
+        if (sortKey.size() > 0 && rows.size() > 1) {
+            rows = new ArrayList<>(rows);
+            rows.sort(this.comparator(sortKey));
+        }
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add((T) this.modelInfo.copy(row));
+        }
+        return result;
+    }
+
+    /**
+     * @return 总数，不可用时为 null
+     */
+    Long count(Object condition) {
+        Snapshot current = this.current();
+        return current == null ? null : (long) this.filter(current, condition).size();
+    }
+
+    /**
+     * 立即重新加载（在当前线程执行）
+     */
+    public void refresh() {
+        this.loading.lock();
+        try {
+            this.load();
+        } finally {
+            this.loading.unlock();
+        }
+    }
+
+    /**
+     * 是否已加载且可用
+     */
+    public boolean ready() {
+        Snapshot current = this.snapshot;
+        return current != null && !current.oversized;
+    }
+
+    /**
+     * 快照中的行数
+     */
+    public int size() {
+        Snapshot current = this.snapshot;
+        return current == null ? 0 : current.rows.size();
+    }
+
+    /**
+     * 在内存中完成的查询次数
+     */
+    public long hitCount() {
+        return this.hitCount.sum();
+    }
+
+    /**
+     * 查询数据库的次数
+     */
+    public long missCount() {
+        return this.missCount.sum();
+    }
+
+    /**
+     * 加载次数
+     */
+    public long loadCount() {
+        return this.loadCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ready=%s size=%s hits=%s misses=%s loads=%s",
+                this.ready(), this.size(), this.hitCount(), this.missCount(), this.loadCount());
+    }
+
+    /**
+     * 可用的快照，不可用时为 null
+     */
+    private Snapshot current() {
+        if (!this.tableVersion.readable() || (Utils.pageHelperPresent && Pages.started())) {
+            this.missCount.increment();
+            return null;
+        }
+        Snapshot current = this.snapshot;
+        if (current == null || current.version != this.tableVersion.get()) {
+            current = null;
+            // 其他线程正在加载时不等待
+            if (this.loading.tryLock()) {
+                try {
+                    current = this.snapshot;
+                    if (current == null || current.version != this.tableVersion.get()) {
+                        current = this.load();
+                    }
+                } finally {
+                    this.loading.unlock();
+                }
+            }
+        } else if (this.refreshMillis > 0 && System.currentTimeMillis() - current.loadedAt > this.refreshMillis) {
+            this.refreshAsync();
+        }
+        if (current == null || current.oversized) {
+            this.missCount.increment();
+            return null;
+        }
+        this.hitCount.increment();
+        return current;
+    }
+
+    private Snapshot load() {
+        long version = this.tableVersion.get();
+        List<?> rows = this.loader.apply(this.maxRows + 1);
+        this.loadCount.increment();
+        Snapshot result;
+        if (rows == null || rows.size() > this.maxRows) {
+            Snapshot previous = this.snapshot;
+            if ((previous == null || !previous.oversized) && log.isWarnEnabled()) {
+                log.warn(String.format("%s has more than maxRows %d rows, not replicated",
+                        this.modelInfo.modelClass().getName(), this.maxRows));
+            }
+            // 记录超出的状态和版本号，表修改或超过 refreshSeconds 后才重新加载
+            result = new Snapshot(version, Collections.emptyList(), this.modelInfo, true);
+        } else {
+            result = new Snapshot(version, rows, this.modelInfo, false);
+        }
+        this.snapshot = result;
+        return result;
+    }
+
+    private void refreshAsync() {
+        if (this.refreshing.compareAndSet(false, true)) {
+            LOADER.execute(() -> {
+                try {
+                    this.refresh();
+                } catch (RuntimeException e) {
+                    log.warn(String.format("Failed to refresh replicated %s", this.modelInfo.modelClass().getName()), e);
+                } finally {
+                    this.refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 条件的非空字段中，取索引中匹配行数最少的字段，再逐行比较其余字段
+     */
+    private List<Object> filter(Snapshot current, Object condition) {
+        long mask = MaskedSqlSource.mask(this.fields, condition);
+        if (mask == 0) {
+            return current.rows;
+        }
+        int count = Long.bitCount(mask);
+        int[] indexes = new int[count];
+        Object[] values = new Object[count];
+        List<Object> candidates = current.rows;
+        int chosen = -1;
+        for (int i = 0, j = 0; i < this.fields.size(); i++) {
+            if ((mask & (1L << i)) == 0) {
+                continue;
+            }
+            indexes[j] = i;
+            values[j] = Utils.idKey(this.fields.get(i).value(condition));
+            List<Object> bucket = current.index(i, this.fields.get(i)).getOrDefault(values[j], Collections.emptyList());
+            if (bucket.size() < candidates.size() || chosen < 0) {
+                candidates = bucket;
+                chosen = j;
+            }
+            if (candidates.isEmpty()) {
+                return candidates;
+            }
+            j++;
+        }
+        if (count == 1) {
+            return candidates;
+        }
+        List<Object> result = new ArrayList<>();
+        for (Object row : candidates) {
+            boolean matched = true;
+            for (int j = 0; j < count && matched; j++) {
+                matched = j == chosen || values[j].equals(Utils.idKey(this.fields.get(indexes[j]).value(row)));
+            }
+            if (matched) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 忽略模型中不存在的属性；升序 null 在前，降序 null 在后
+     */
+    private Comparator<Object> comparator(SorterRegistry.SortKey sortKey) {
+        Comparator<Object> result = (a, b) -> 0;
+        for (int i = 0; i < sortKey.size(); i++) {
+            String property = sortKey.property(i);
+            ModelField field = this.fields.stream()
+                    .filter(f -> f.property().equals(property))
+                    .findFirst()
+                    .orElse(null);
+            if (field == null) {
+                continue;
+            }
+            Comparator<Object> byField = Comparator.comparing(row -> comparable(field.value(row)),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            result = result.thenComparing(sortKey.asc(i) ? byField : byField.reversed());
+        }
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparable<Object> comparable(Object value) {
+        return (Comparable) Utils.idKey(value);
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final long loadedAt = System.currentTimeMillis();
+        /**
+         * 行数超过 maxRows，不可用
+         */
+        private final boolean oversized;
+        private final List<Object> rows;
+        private final Map<Object, Object> byId;
+        /**
+         * 字段下标 -> 字段值 -> 行，字段首次作为条件时建立
+         */
+        private final Map<Integer, Map<Object, List<Object>>> indexes = new ConcurrentHashMap<>();
+
+        private Snapshot(long version, List<?> rows, ModelInfo modelInfo, boolean oversized) {
+            this.version = version;
+            this.oversized = oversized;
+            Map<Object, Object> byId = new HashMap<>(rows.size() * 4 / 3 + 1);
+            for (Object row : rows) {
+                byId.put(Utils.idKey(modelInfo.idValue(row)), row);
+            }
+            this.rows = Collections.unmodifiableList(new ArrayList<>(rows));
+            this.byId = byId;
+        }
+
+        private Map<Object, List<Object>> index(int fieldIndex, ModelField field) {
+            return this.indexes.computeIfAbsent(fieldIndex, key -> {
+                Map<Object, List<Object>> index = new HashMap<>();
+                for (Object row : this.rows) {
+                    Object value = field.value(row);
+                    if (value != null) {
+                        index.computeIfAbsent(Utils.idKey(value), k -> new ArrayList<>(1)).add(row);
+                    }
+                }
+                return index;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.Sorter;
+import com.loyayz.simple.helper.Utils;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 排序变体注册表
+ * <p>
+ * listByCondition 只注册一个 MappedStatement，其 SqlSource 为本注册表：
+ * 执行前把排序描述（属性名 + 方向）放入当前线程，由本注册表按排序描述取出对应的 SqlSource。
+ * 排序变体数量有上限，超出时淘汰最久未使用的变体，不会占用 MyBatis Configuration。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class SorterRegistry implements SqlSource {
+    private static final ThreadLocal<SortKey> CURRENT_KEY = new ThreadLocal<>();
+
+    private final int capacity;
+    /**
+     * 根据排序描述构建 SqlSource
+     */
+    private final Function<SortKey, SqlSource> compiler;
+    private final Map<SortKey, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    SorterRegistry(int capacity, Function<SortKey, SqlSource> compiler) {
+        this.capacity = Math.max(capacity, 1);
+        this.compiler = compiler;
+    }
+
+    /**
+     * 以指定排序执行
+     *
+     * @param sorters 排序
+     * @param action  查询
+     */
+    <R> R execute(Sorter[] sorters, Supplier<R> action) {
+        SortKey previous = CURRENT_KEY.get();
+        CURRENT_KEY.set(SortKey.of(sorters));
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_KEY.remove();
+            } else {
+                CURRENT_KEY.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        SortKey key = CURRENT_KEY.get();
+        return this.sqlSource(key == null ? SortKey.NONE : key).getBoundSql(parameterObject);
+    }
+
+    SqlSource sqlSource(SortKey key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            this.hitCount.increment();
+        } else {
+            this.missCount.increment();
+            entry = this.entries.computeIfAbsent(key, k -> new Entry(this.compiler.apply(k)));
+            if (this.entries.size() > this.capacity) {
+                this.evict(key);
+            }
+        }
+        entry.accessTime = this.clock.incrementAndGet();
+        return entry.sqlSource;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long hitCount() {
+        return this.hitCount.sum();
+    }
+
+    /**
+     * 未命中次数（即构建排序变体的次数）
+     */
+    public long missCount() {
+        return this.missCount.sum();
+    }
+
+    /**
+     * 淘汰次数
+     */
+    public long evictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    /**
+     * 当前排序变体数量
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * 淘汰最久未使用的变体，直到数量不超过上限
+     *
+     * @param retained 不淘汰的排序描述（刚加入的变体）
+     */
+    private synchronized void evict(SortKey retained) {
+        while (this.entries.size() > this.capacity) {
+            SortKey eldest = null;
+            long eldestTime = Long.MAX_VALUE;
+            for (Map.Entry<SortKey, Entry> entry : this.entries.entrySet()) {
+                if (!entry.getKey().equals(retained) && entry.getValue().accessTime < eldestTime) {
+                    eldest = entry.getKey();
+                    eldestTime = entry.getValue().accessTime;
+                }
+            }
+            if (eldest == null || this.entries.remove(eldest) == null) {
+                return;
+            }
+            this.evictionCount.increment();
+        }
+    }
+
+    private static final class Entry {
+        private final SqlSource sqlSource;
+        private volatile long accessTime;
+
+        private Entry(SqlSource sqlSource) {
+            this.sqlSource = sqlSource;
+        }
+    }
+
+    /**
+     * 排序描述
+     * 属性名取自 {@link Utils#getLambdaProperty(Sorter)}（按 lambda 类缓存），不拼接字符串
+     */
+    static final class SortKey {
+        static final SortKey NONE = new SortKey(new String[0], new boolean[0]);
+
+        private final String[] properties;
+        private final boolean[] asc;
+        private final int hash;
+
+        private SortKey(String[] properties, boolean[] asc) {
+            this.properties = properties;
+            this.asc = asc;
+            this.hash = 31 * Arrays.hashCode(properties) + Arrays.hashCode(asc);
+        }
+
+        static SortKey of(Sorter... sorters) {
+            if (sorters == null || sorters.length == 0) {
+                return NONE;
+            }
+            String[] properties = new String[sorters.length];
+            boolean[] asc = new boolean[sorters.length];
+            for (int i = 0; i < sorters.length; i++) {
+                properties[i] = Utils.getLambdaProperty(sorters[i]);
+                asc[i] = sorters[i].orderByAsc();
+            }
+            return new SortKey(properties, asc);
+        }
+
+        int size() {
+            return this.properties.length;
+        }
+
+        String property(int index) {
+            return this.properties[index];
+        }
+
+        boolean asc(int index) {
+            return this.asc[index];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SortKey)) {
+                return false;
+            }
+            SortKey other = (SortKey) o;
+            return this.hash == other.hash
+                    && Arrays.equals(this.properties, other.properties)
+                    && Arrays.equals(this.asc, other.asc);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+}
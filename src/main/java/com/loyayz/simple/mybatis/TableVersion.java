@@ -0,0 +1,98 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.Utils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 表的写版本号：通过 mapper 修改表时递增，查询缓存记录写入时的版本号，版本号不同即失效，无需逐个移除
+ * <p>
+ * 同一张表的所有 mapper 共用一个版本号。在 Spring 事务中修改时，事务结束后再递增一次，
+ * 且该事务不再读写这张表的查询缓存，避免读到或写入未提交的数据。
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+final class TableVersion {
+    private static final Map<String, TableVersion> VERSIONS = new ConcurrentHashMap<>();
+
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * 是否有模型开启了这张表的查询缓存（没有时事务中修改无需登记）
+     */
+    private volatile boolean cached;
+
+    private TableVersion() {
+    }
+
+    static TableVersion of(String tableName) {
+        return VERSIONS.computeIfAbsent(tableName.toLowerCase(Locale.ENGLISH), key -> new TableVersion());
+    }
+
+    long get() {
+        return this.version.get();
+    }
+
+    void cached() {
+        this.cached = true;
+    }
+
+    /**
+     * 表已修改
+     */
+    void written() {
+        this.version.incrementAndGet();
+        if (this.cached && Utils.springTxPresent && TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            Written written = new Written(this);
+            TransactionSynchronizationManager.bindResource(this, written);
+            TransactionSynchronizationManager.registerSynchronization(written);
+        }
+    }
+
+    /**
+     * 只递增版本号，不登记事务同步（事务结束后调用）
+     */
+    void increment() {
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * 当前事务未修改过这张表
+     */
+    boolean readable() {
+        return !this.cached || !Utils.springTxPresent || !TransactionSynchronizationManager.hasResource(this);
+    }
+
+    /**
+     * 事务结束后再递增一次版本号
+     */
+    private static final class Written implements TransactionSynchronization {
+        private final TableVersion owner;
+
+        private Written(TableVersion owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this.owner);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(this.owner, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this.owner);
+            this.owner.increment();
+        }
+    }
+
+}
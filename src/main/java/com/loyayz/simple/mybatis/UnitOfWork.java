@@ -0,0 +1,165 @@
+package com.loyayz.simple.mybatis;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 工作单元：在 Spring 事务中暂存写操作，提交前合并执行
+ * <p>
+ * 开启后（{@link #begin()}），当前事务中 MybatisBaseMapper 的 insert、updateById、deleteById 不立即执行，
+ * 返回 true；在事务提交前按模型和操作合并执行：insert 为多行 insert（部分字段为 null 时按非空字段分组批处理），
+ * updateById 为 JDBC 批处理，deleteById 为 IN 删除。执行时影响行数与暂存的操作数不符（如修改、删除的记录不存在）
+ * 抛出 IllegalStateException，事务回滚。
+ * <p>
+ * 执行顺序与调用顺序一致：只合并连续的同一模型同类操作，中间穿插其他模型或其他操作时另起一组，
+ * 外键依赖的先后顺序（如先新增主表再新增子表）不会被打乱。
+ * 通过 MybatisBaseMapper 执行其他 SQL（查询等）前会先执行暂存的操作；
+ * 直接使用 SqlSession 或自定义 mapper 时，可先调用 {@link #flushCurrent()}。
+ * 暂存的是模型对象的引用，执行时读取对象的当前值。事务回滚时丢弃暂存的操作。
+ * <p>
+ * 需要 spring-tx 依赖，且在 Spring 事务中使用：
+ * <pre>
+ * &#64;Transactional
+ * public void importOrders(List&lt;Order&gt; orders) {
+ *     UnitOfWork.begin();
+ *     for (Order order : orders) {
+ *         order.insert();
+ *     }
+ * }
+ * </pre>
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+public final class UnitOfWork implements TransactionSynchronization {
+    private static final Object RESOURCE_KEY = UnitOfWork.class;
+
+    /**
+     * 按调用顺序排列的操作组
+     */
+    private final List<Group> groups = new ArrayList<>();
+    private boolean flushing;
+
+    private UnitOfWork() {
+    }
+
+    /**
+     * 在当前 Spring 事务中开启工作单元（已开启时返回已有的）
+     */
+    public static UnitOfWork begin() {
+        UnitOfWork current = current();
+        if (current != null) {
+            return current;
+        }
+        Assert.isTrue(TransactionSynchronizationManager.isSynchronizationActive(), "工作单元需要在 Spring 事务中开启");
+        current = new UnitOfWork();
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, current);
+        TransactionSynchronizationManager.registerSynchronization(current);
+        return current;
+    }
+
+    /**
+     * 当前事务的工作单元，未开启时为 null
+     */
+    public static UnitOfWork current() {
+        return (UnitOfWork) TransactionSynchronizationManager.getResource(RESOURCE_KEY);
+    }
+
+    /**
+     * 立即执行当前事务中暂存的操作（未开启工作单元时忽略）
+     */
+    public static void flushCurrent() {
+        UnitOfWork current = current();
+        if (current != null) {
+            current.flushAll();
+        }
+    }
+
+    /**
+     * 暂存的操作数
+     */
+    public int size() {
+        return this.groups.stream().mapToInt(group -> group.items.size()).sum();
+    }
+
+    /**
+     * 暂存操作
+     *
+     * @return 是否已暂存（正在执行暂存的操作时为 false，应立即执行）
+     */
+    boolean enqueue(MybatisBaseMapper<?> mapper, Operation operation, Object item) {
+        if (this.flushing) {
+            return false;
+        }
+        Group group = this.groups.isEmpty() ? null : this.groups.get(this.groups.size() - 1);
+        if (group == null || group.mapper != mapper || group.operation != operation) {
+            group = new Group(mapper, operation);
+            this.groups.add(group);
+        }
+        group.items.add(item);
+        return true;
+    }
+
+    void flushAll() {
+        if (this.flushing || this.groups.isEmpty()) {
+            return;
+        }
+        this.flushing = true;
+        try {
+            for (Group group : this.groups) {
+                group.mapper.flushQueued(group.operation, group.items);
+            }
+        } finally {
+            this.groups.clear();
+            this.flushing = false;
+        }
+    }
+
+    @Override
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(RESOURCE_KEY, this);
+    }
+
+    /**
+     * 立即执行暂存的操作（Spring 事务 flush 时也会调用）
+     */
+    @Override
+    public void flush() {
+        this.flushAll();
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+        this.flushAll();
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        this.groups.clear();
+        TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE_KEY);
+    }
+
+    enum Operation {
+        INSERT, UPDATE_BY_ID, DELETE_BY_ID
+    }
+
+    private static final class Group {
+        private final MybatisBaseMapper<?> mapper;
+        private final Operation operation;
+        private final List<Object> items = new ArrayList<>();
+
+        private Group(MybatisBaseMapper<?> mapper, Operation operation) {
+            this.mapper = mapper;
+            this.operation = operation;
+        }
+    }
+
+}
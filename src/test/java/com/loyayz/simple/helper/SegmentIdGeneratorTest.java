@@ -0,0 +1,154 @@
+package com.loyayz.simple.helper;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class SegmentIdGeneratorTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:segment" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        this.dataSource = dataSource;
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE simple_id_segment (tag VARCHAR(128) NOT NULL PRIMARY KEY, max_id BIGINT NOT NULL)");
+        }
+    }
+
+    @Test
+    void concurrentAllocation() throws Exception {
+        SegmentIdGenerator generator = this.generator("concurrent", 50);
+        int threads = 8, rounds = 500;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < rounds; i++) {
+                    if (!ids.add(generator.nextId())) {
+                        duplicates.incrementAndGet();
+                    }
+                    for (Object id : generator.generate(null, 3)) {
+                        if (!ids.add((Long) id)) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, duplicates.get());
+        assertEquals(threads * rounds * 4, ids.size());
+        long maxId = this.maxId("concurrent");
+        for (Long id : ids) {
+            assertTrue(id >= 1 && id <= maxId, "id " + id + " 不在已申请的号段内");
+        }
+    }
+
+    @Test
+    void prefetchNextSegment() throws Exception {
+        SegmentIdGenerator generator = this.generator("prefetch", 10);
+        assertEquals(1L, generator.nextId());
+        assertEquals(10L, this.maxId("prefetch"));
+        // 发放超过 10% 时在后台申请下一个号段
+        assertEquals(2L, generator.nextId());
+        await(() -> this.maxId("prefetch") == 20L);
+        for (long expected = 3; expected <= 10; expected++) {
+            assertEquals(expected, generator.nextId());
+        }
+        // 用尽时切换到预取的号段，不再申请
+        assertEquals(11L, generator.nextId());
+        assertEquals(20L, this.maxId("prefetch"));
+    }
+
+    @Test
+    void fallbackWhenPrefetchFails() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        AtomicInteger failures = new AtomicInteger();
+        SegmentIdGenerator generator = new SegmentIdGenerator("fallback", 10);
+        generator.dataSource(() -> {
+            if (failing.get()) {
+                failures.incrementAndGet();
+                throw new IllegalStateException("database unavailable");
+            }
+            return this.dataSource;
+        });
+        assertEquals(1L, generator.nextId());
+        failing.set(true);
+        assertEquals(2L, generator.nextId());
+        await(() -> failures.get() == 1);
+        failing.set(false);
+        for (long expected = 3; expected <= 10; expected++) {
+            assertEquals(expected, generator.nextId());
+        }
+        // 预取失败时同步申请
+        assertEquals(11L, generator.nextId());
+        assertEquals(20L, this.maxId("fallback"));
+    }
+
+    @Test
+    void batchAcrossSegments() throws Exception {
+        SegmentIdGenerator generator = this.generator("batch", 10);
+        Object[] ids = generator.generate(null, 25);
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i + 1L, ids[i]);
+        }
+        assertEquals(26L, generator.nextId());
+    }
+
+    private SegmentIdGenerator generator(String tag, int step) {
+        SegmentIdGenerator generator = new SegmentIdGenerator(tag, step);
+        generator.dataSource(() -> this.dataSource);
+        return generator;
+    }
+
+    private long maxId(String tag) {
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT max_id FROM simple_id_segment WHERE tag = '" + tag + "'")) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.loyayz.simple.mybatis;
+
+import lombok.Data;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JDBC 批处理与调用方的 SqlSession 处于同一事务
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class BatchSessionsTest {
+
+    @Test
+    void shareSpringTransaction() {
+        H2Database database = new H2Database("CREATE TABLE template_row (id BIGINT PRIMARY KEY, name VARCHAR(20))",
+                "INSERT INTO template_row VALUES (1, 'a'), (2, 'b')");
+        AtomicInteger batchSessions = new AtomicInteger();
+        Configuration configuration = new Configuration(new Environment("spring", new SpringManagedTransactionFactory(), database.dataSource));
+        SqlSessionTemplate template = new SqlSessionTemplate(new DefaultSqlSessionFactory(configuration) {
+            @Override
+            public SqlSession openSession(ExecutorType execType) {
+                if (execType == ExecutorType.BATCH) {
+                    batchSessions.incrementAndGet();
+                }
+                return super.openSession(execType);
+            }
+        });
+        MybatisBaseMapper<TemplateRow> mapper = H2Database.mapper(TemplateRow.class, template);
+        JdbcTemplate jdbc = new JdbcTemplate(database.dataSource);
+
+        new TransactionTemplate(new DataSourceTransactionManager(database.dataSource)).executeWithoutResult(status -> {
+            assertEquals(2, mapper.batchUpdateById(Arrays.asList(templateRow(1L, "x"), templateRow(2L, "y"))));
+            // 同一个连接可以读到未提交的修改
+            assertEquals("x", jdbc.queryForObject("SELECT name FROM template_row WHERE id = 1", String.class));
+            status.setRollbackOnly();
+        });
+        assertEquals(1, batchSessions.get());
+        assertEquals(names("a", "b"), jdbc.queryForList("SELECT name FROM template_row ORDER BY id", String.class));
+    }
+
+    @Test
+    void runInCallerSession() {
+        H2Database database = new H2Database("CREATE TABLE plain_row (id BIGINT PRIMARY KEY, name VARCHAR(20))",
+                "INSERT INTO plain_row VALUES (1, 'a'), (2, 'b')");
+        JdbcTemplate jdbc = new JdbcTemplate(database.dataSource);
+        try (SqlSession session = new DefaultSqlSessionFactory(database.configuration).openSession(false)) {
+            MybatisBaseMapper<PlainRow> mapper = H2Database.mapper(PlainRow.class, session);
+            assertEquals(2, mapper.batchUpdateById(Arrays.asList(plainRow(1L, "x"), plainRow(2L, "y"))));
+            session.rollback(true);
+            assertEquals(names("a", "b"), jdbc.queryForList("SELECT name FROM plain_row ORDER BY id", String.class));
+
+            assertEquals(1, mapper.batchUpdateById(Arrays.asList(plainRow(1L, "x"))));
+            session.commit(true);
+            assertEquals(names("x", "b"), jdbc.queryForList("SELECT name FROM plain_row ORDER BY id", String.class));
+        }
+    }
+
+    private static List<String> names(String... names) {
+        return Arrays.asList(names);
+    }
+
+    private static TemplateRow templateRow(Long id, String name) {
+        TemplateRow row = new TemplateRow();
+        row.setId(id);
+        row.setName(name);
+        return row;
+    }
+
+    private static PlainRow plainRow(Long id, String name) {
+        PlainRow row = new PlainRow();
+        row.setId(id);
+        row.setName(name);
+        return row;
+    }
+
+    @Data
+    public static class TemplateRow {
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    public static class PlainRow {
+        private Long id;
+        private String name;
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.ModelHelper;
+import com.loyayz.simple.helper.ModelInfo;
+import lombok.Data;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * batchUpsert 按数据库方言生成的 SQL，及新增、修改的结果
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class BatchUpsertTest {
+    private static H2Database database;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2Database(
+                "CREATE TABLE upsert_row (id BIGINT PRIMARY KEY, name VARCHAR(20), age INT)",
+                "CREATE TABLE fallback_row (id BIGINT PRIMARY KEY, name VARCHAR(20), age INT)");
+    }
+
+    @Test
+    void sqlByDialect() {
+        assertEquals("INSERT INTO upsert_row (id,name,age) VALUES (?,?,?) , (?,?,?)" +
+                        " ON DUPLICATE KEY UPDATE name = VALUES(name),age = VALUES(age)",
+                sql(Dialect.MYSQL));
+        assertEquals("INSERT INTO upsert_row (id,name,age) VALUES (?,?,?) , (?,?,?)" +
+                        " ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name,age = EXCLUDED.age",
+                sql(Dialect.POSTGRESQL));
+        assertEquals("MERGE INTO upsert_row AS t USING (VALUES (?,?,?) , (?,?,?) ) AS s (id,name,age) ON t.id = s.id" +
+                        " WHEN MATCHED THEN UPDATE SET name = s.name,age = s.age" +
+                        " WHEN NOT MATCHED THEN INSERT (id,name,age) VALUES (s.id,s.name,s.age);",
+                sql(Dialect.SQLSERVER));
+        assertEquals("MERGE INTO upsert_row (id,name,age) KEY (id) VALUES (?,?,?) , (?,?,?)",
+                sql(Dialect.H2));
+    }
+
+    @Test
+    void insertAndUpdate() {
+        database.execute("INSERT INTO upsert_row VALUES (1, 'a', 10)");
+        MybatisBaseMapper<UpsertRow> mapper = database.mapper(UpsertRow.class);
+        assertEquals(2, mapper.batchUpsert(Arrays.asList(
+                upsertRow(1L, "ignored", 1), upsertRow(2L, "b", null), upsertRow(1L, "a2", null))));
+        assertEquals(upsertRow(1L, "a2", null), mapper.findById(1L).orElse(null));
+        assertEquals(upsertRow(2L, "b", null), mapper.findById(2L).orElse(null));
+    }
+
+    @Test
+    void insertOrUpdateOnUnknownDialect() {
+        database.execute("INSERT INTO fallback_row VALUES (1, 'a', 10)");
+        MybatisBaseMapper<FallbackRow> mapper = database.mapper(FallbackRow.class);
+        Field dialect = ReflectionUtils.findField(MybatisBaseMapper.class, "dialect");
+        ReflectionUtils.makeAccessible(dialect);
+        ReflectionUtils.setField(dialect, mapper, Dialect.OTHER);
+
+        assertEquals(2, mapper.batchUpsert(Arrays.asList(fallbackRow(1L, "a2", null), fallbackRow(2L, "b", 20))));
+        assertEquals(fallbackRow(1L, "a2", null), mapper.findById(1L).orElse(null));
+        assertEquals(fallbackRow(2L, "b", 20), mapper.findById(2L).orElse(null));
+        assertTrue(mapper.upsert(fallbackRow(3L, "c", 30)));
+        assertEquals(3, mapper.countByCondition(null));
+    }
+
+    private static String sql(Dialect dialect) {
+        database.mapper(UpsertRow.class);
+        ModelInfo modelInfo = ModelHelper.modelInfo(UpsertRow.class);
+        String script = MybatisScripts.batchUpsert(dialect, "upsert_row", modelInfo.fields(), modelInfo.idField());
+        Map<String, Object> param = Collections.singletonMap("list", Arrays.asList(new UpsertRow(), new UpsertRow()));
+        return new XMLLanguageDriver().createSqlSource(database.configuration, script, Map.class)
+                .getBoundSql(param).getSql().replaceAll("\\s+", " ").trim();
+    }
+
+    private static UpsertRow upsertRow(Long id, String name, Integer age) {
+        UpsertRow row = new UpsertRow();
+        row.setId(id);
+        row.setName(name);
+        row.setAge(age);
+        return row;
+    }
+
+    private static FallbackRow fallbackRow(Long id, String name, Integer age) {
+        FallbackRow row = new FallbackRow();
+        row.setId(id);
+        row.setName(name);
+        row.setAge(age);
+        return row;
+    }
+
+    @Data
+    public static class UpsertRow {
+        private Long id;
+        private String name;
+        private Integer age;
+    }
+
+    @Data
+    public static class FallbackRow {
+        private Long id;
+        private String name;
+        private Integer age;
+    }
+
+}
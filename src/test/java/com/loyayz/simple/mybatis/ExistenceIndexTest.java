@@ -0,0 +1,78 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.annotation.BloomIndex;
+import lombok.Data;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 其他进程新增的记录 existsById 仍返回 true
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class ExistenceIndexTest {
+    private static H2Database database;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2Database(
+                "CREATE TABLE indexed_row (id BIGINT PRIMARY KEY, name VARCHAR(20))",
+                "CREATE TABLE trusted_row (id BIGINT PRIMARY KEY, name VARCHAR(20))",
+                "INSERT INTO indexed_row VALUES (1, 'a')",
+                "INSERT INTO trusted_row VALUES (1, 'a')");
+    }
+
+    @Test
+    void insertedOutsideMapper() {
+        MybatisBaseMapper<IndexedRow> mapper = database.mapper(IndexedRow.class);
+        ExistenceIndex index = mapper.existenceIndex();
+        index.rebuild();
+        assertTrue(mapper.existsById(1L));
+
+        // 其他进程新增
+        database.execute("INSERT INTO indexed_row VALUES (2, 'b')");
+        assertTrue(mapper.existsById(2L));
+        assertEquals(1, index.falseNegativeCount());
+        // 查到后加入过滤器
+        long negatives = index.negativeCount();
+        assertTrue(mapper.existsById(2L));
+        assertEquals(negatives, index.negativeCount());
+        assertFalse(mapper.existsById(3L));
+        assertEquals(1, index.falseNegativeCount());
+    }
+
+    @Test
+    void trustMisses() {
+        MybatisBaseMapper<TrustedRow> mapper = database.mapper(TrustedRow.class);
+        ExistenceIndex index = mapper.existenceIndex();
+        index.rebuild();
+        TrustedRow row = new TrustedRow();
+        row.setId(2L);
+        row.setName("b");
+        mapper.insert(row);
+        assertTrue(mapper.existsById(2L));
+
+        // 信任不存在的判断时，不经过 mapper 新增的记录在重新构建前返回 false
+        database.execute("INSERT INTO trusted_row VALUES (3, 'c')");
+        assertFalse(mapper.existsById(3L));
+        index.rebuild();
+        assertTrue(mapper.existsById(3L));
+    }
+
+    @Data
+    @BloomIndex(expectedInsertions = 1000)
+    public static class IndexedRow {
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    @BloomIndex(expectedInsertions = 1000, trustMisses = true)
+    public static class TrustedRow {
+        private Long id;
+        private String name;
+    }
+
+}
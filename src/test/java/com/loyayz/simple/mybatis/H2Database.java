@@ -0,0 +1,69 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.ModelHelper;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 H2 内存数据库和自动提交的 SqlSession
+ * <p>
+ * mapper 按模型类全局唯一并缓存已注册的 MappedStatement，同一个模型类只能在一个数据库中使用
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+final class H2Database {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    final JdbcDataSource dataSource = new JdbcDataSource();
+    final Configuration configuration;
+    final SqlSession session;
+
+    H2Database(String... ddl) {
+        this.dataSource.setURL("jdbc:h2:mem:test" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        this.configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), this.dataSource));
+        // 与 SqlSessionTemplate 每次调用使用新的 SqlSession 一致，不缓存查询结果
+        this.configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        this.session = new SqlSessionFactoryBuilder().build(this.configuration).openSession(true);
+        this.execute(ddl);
+    }
+
+    void execute(String... sql) {
+        try (Connection connection = this.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String s : sql) {
+                statement.execute(s);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    <T> MybatisBaseMapper<T> mapper(Class<T> modelClass) {
+        return mapper(modelClass, this.session);
+    }
+
+    /**
+     * @param session mapper 使用的 SqlSession（其 Configuration 需为当前数据库）
+     */
+    @SuppressWarnings("unchecked")
+    static <T> MybatisBaseMapper<T> mapper(Class<T> modelClass, SqlSession session) {
+        MybatisBaseMapper<T> mapper = (MybatisBaseMapper<T>) (ModelHelper.exist(modelClass) ?
+                ModelHelper.mapper(modelClass) : ModelHelper.init(modelClass));
+        Field field = ReflectionUtils.findField(MybatisBaseMapper.class, "sqlSession");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, mapper, session);
+        return mapper;
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.ModelField;
+import com.loyayz.simple.helper.ModelHelper;
+import com.loyayz.simple.helper.ModelInfo;
+import lombok.Data;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按掩码生成的静态 SQL 与 if 标签的动态脚本在各种 null 组合下一致
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class MaskedSqlSourceTest {
+    private static H2Database database;
+    private static ModelInfo modelInfo;
+    private static Map<String, String> scripts;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2Database("CREATE TABLE masked_row (id BIGINT PRIMARY KEY, name VARCHAR(20), age INT, score INT NOT NULL)");
+        database.mapper(MaskedRow.class);
+        modelInfo = ModelHelper.modelInfo(MaskedRow.class);
+        scripts = MybatisScripts.fixedScripts("masked_row", modelInfo.fields(), modelInfo.idField());
+        for (MaskedRow row : rows()) {
+            if (row.getId() != null) {
+                database.execute(String.format("INSERT INTO masked_row VALUES (%d, %s, %s, %d)", row.getId(),
+                        row.getName() == null ? "NULL" : "'" + row.getName() + "'", row.getAge(), row.getScore()));
+            }
+        }
+    }
+
+    @Test
+    void condition() {
+        List<ModelField> fields = modelInfo.fields();
+        assertSame("<script>" + scripts.get("selectByCondition") + "</script>", fields,
+                present -> scripts.get("select") + MybatisScripts.where(present));
+        assertSame(scripts.get("countByCondition"), fields,
+                present -> "SELECT COUNT(*) FROM masked_row" + MybatisScripts.where(present));
+        assertSame(scripts.get("deleteByCondition"), fields,
+                present -> "DELETE FROM masked_row" + MybatisScripts.where(present));
+    }
+
+    @Test
+    void insertAndUpdate() {
+        assertSame(scripts.get("insert"), modelInfo.getInsertFields(),
+                present -> String.format("INSERT INTO masked_row %s VALUES %s",
+                        MybatisScripts.insertColumns(present, false), MybatisScripts.insertProperties(present, false, "")));
+        assertSame(scripts.get("updateById"), modelInfo.getUpdateFields(),
+                present -> String.format("UPDATE masked_row %s WHERE %s",
+                        MybatisScripts.updateSet(present), MybatisScripts.columnEqual(modelInfo.idField())));
+    }
+
+    @Test
+    void sameRows() {
+        String dynamicId = register("dynamicList", sqlSource("<script>" + scripts.get("selectByCondition") + "</script>"));
+        String staticId = register("staticList", new MaskedSqlSource(database.configuration, MaskedRow.class, modelInfo.fields(),
+                present -> scripts.get("select") + MybatisScripts.where(present)));
+        for (MaskedRow condition : rows()) {
+            List<Object> expected = database.session.selectList(dynamicId, condition);
+            assertEquals(expected, database.session.selectList(staticId, condition), condition.toString());
+        }
+        // 只有基本类型字段参与条件
+        MaskedRow byScore = new MaskedRow();
+        byScore.setScore(1);
+        assertEquals(4, database.session.selectList(staticId, byScore).size());
+    }
+
+    /**
+     * 静态 SQL 与动态脚本的 SQL（忽略空白）、参数一致
+     */
+    private static void assertSame(String script, List<ModelField> fields, Function<List<ModelField>, String> staticScript) {
+        SqlSource dynamic = sqlSource(script);
+        SqlSource masked = new MaskedSqlSource(database.configuration, MaskedRow.class, fields, staticScript);
+        for (MaskedRow row : rows()) {
+            BoundSql expected = dynamic.getBoundSql(row), actual = masked.getBoundSql(row);
+            assertEquals(normalize(expected.getSql()), normalize(actual.getSql()), row.toString());
+            assertEquals(properties(expected), properties(actual), row.toString());
+        }
+    }
+
+    /**
+     * 各字段为 null 与非 null 的所有组合（score 为基本类型，总是参与）
+     */
+    private static List<MaskedRow> rows() {
+        List<MaskedRow> rows = new ArrayList<>();
+        for (int mask = 0; mask < 8; mask++) {
+            MaskedRow row = new MaskedRow();
+            row.setId((mask & 1) == 0 ? null : 10L + mask);
+            row.setName((mask & 2) == 0 ? null : "n" + mask);
+            row.setAge((mask & 4) == 0 ? null : mask);
+            row.setScore(mask == 0 ? 0 : 1);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static SqlSource sqlSource(String script) {
+        return new XMLLanguageDriver().createSqlSource(database.configuration, script, MaskedRow.class);
+    }
+
+    private static String register(String id, SqlSource sqlSource) {
+        ResultMap resultMap = new ResultMap.Builder(database.configuration, id + "-result", MaskedRow.class,
+                Collections.emptyList()).build();
+        database.configuration.addMappedStatement(new MappedStatement.Builder(database.configuration, id, sqlSource,
+                SqlCommandType.SELECT).resultMaps(Collections.singletonList(resultMap)).build());
+        return id;
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").replaceAll(" ?([(),=]) ?", "$1").trim();
+    }
+
+    private static List<String> properties(BoundSql boundSql) {
+        return boundSql.getParameterMappings().stream()
+                .map(ParameterMapping::getProperty)
+                .collect(Collectors.toList());
+    }
+
+    @Data
+    public static class MaskedRow {
+        private Long id;
+        private String name;
+        private Integer age;
+        private int score;
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.annotation.EntityCache;
+import com.loyayz.simple.helper.ModelHelper;
+import com.loyayz.simple.helper.ModelInfo;
+import lombok.Data;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.lang.annotation.Annotation;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询与修改交错时实体缓存不保留旧数据
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class ModelCacheTest {
+    private final ExecutorService reader = Executors.newSingleThreadExecutor();
+    private ModelCache cache;
+    private TableVersion tableVersion;
+
+    @BeforeEach
+    void setUp() {
+        if (!ModelHelper.exist(CachedItem.class)) {
+            ModelHelper.init(CachedItem.class);
+        }
+        ModelInfo modelInfo = ModelHelper.modelInfo(CachedItem.class);
+        this.tableVersion = TableVersion.of(modelInfo.modelName());
+        this.cache = ModelCache.of(modelInfo, this.tableVersion);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.reader.shutdownNow();
+    }
+
+    @Test
+    void putAndCopy() {
+        this.cache.put(item(1L, "a"), this.cache.version());
+        CachedItem cached = (CachedItem) this.cache.get(1L);
+        assertEquals("a", cached.getName());
+        cached.setName("changed");
+        assertEquals("a", ((CachedItem) this.cache.get(1L)).getName());
+    }
+
+    @Test
+    void skipPutWhenWrittenDuringQuery() {
+        // 读线程查询前记录版本号
+        long version = this.cache.version();
+        // 写线程修改前移除
+        this.tableVersion.written();
+        this.cache.invalidate(1L);
+        // 读线程写入修改前查到的旧数据
+        this.cache.put(item(1L, "old"), version);
+        assertNull(this.cache.get(1L));
+    }
+
+    @Test
+    void removeAgainAfterWrite() {
+        // 写线程修改前移除
+        this.tableVersion.written();
+        this.cache.invalidate(1L);
+        // 读线程在移除之后、修改执行之前查询并写入
+        this.cache.put(item(1L, "old"), this.cache.version());
+        // 写线程修改执行后
+        this.tableVersion.written();
+        this.cache.written();
+        assertNull(this.cache.get(1L));
+    }
+
+    @Test
+    void skipPutOfRowReadBeforeCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        long version;
+        try {
+            // 写线程在事务中修改
+            this.tableVersion.written();
+            this.cache.invalidate(1L);
+            this.tableVersion.written();
+            // 读线程在提交前查询（查到旧数据）
+            version = this.read(this.cache::version);
+            // 提交
+            TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        // 读线程在事务结束后写入旧数据
+        this.read(() -> {
+            this.cache.put(item(1L, "old"), version);
+            return null;
+        });
+        assertNull(this.read(() -> this.cache.get(1L)));
+    }
+
+    @Test
+    void notWritableInTransactionThatWrote() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.cache.invalidate(1L);
+            this.cache.put(item(1L, "uncommitted"), this.cache.version());
+            assertNull(this.cache.get(1L));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void mappedRecordsExpireByCurrentTtl(@TempDir Path dir) throws Exception {
+        ModelInfo modelInfo = ModelHelper.modelInfo(CachedItem.class);
+        String cacheDir = System.setProperty("simple.cacheDir", dir.toString());
+        try {
+            ModelCache writer = new ModelCache(modelInfo, this.tableVersion, config(600));
+            writer.put(item(1L, "a"), writer.version());
+            writer.mappedStore().close();
+            // 重启后从文件中读取
+            ModelCache restarted = new ModelCache(modelInfo, this.tableVersion, config(600));
+            assertEquals("a", ((CachedItem) restarted.get(1L)).getName());
+            assertEquals(1, restarted.mappedStore().hitCount());
+            restarted.mappedStore().close();
+            // 重启后调小 ttlSeconds：按写入时间丢弃
+            Thread.sleep(1100);
+            ModelCache shorter = new ModelCache(modelInfo, this.tableVersion, config(1));
+            assertNull(shorter.get(1L));
+            assertEquals(0, shorter.mappedStore().size());
+            shorter.mappedStore().close();
+        } finally {
+            if (cacheDir == null) {
+                System.clearProperty("simple.cacheDir");
+            } else {
+                System.setProperty("simple.cacheDir", cacheDir);
+            }
+        }
+    }
+
+    @Test
+    void mappedStoreRequiresTtl() {
+        ModelCache cache = new ModelCache(ModelHelper.modelInfo(CachedItem.class), this.tableVersion, config(0));
+        assertNull(cache.mappedStore());
+    }
+
+    private <V> V read(Callable<V> task) throws Exception {
+        return this.reader.submit(task).get();
+    }
+
+    private static CachedItem item(Long id, String name) {
+        CachedItem item = new CachedItem();
+        item.setId(id);
+        item.setName(name);
+        return item;
+    }
+
+    private static EntityCache config(long ttlSeconds) {
+        return new EntityCache() {
+            @Override
+            public int maximumSize() {
+                return 100;
+            }
+
+            @Override
+            public long ttlSeconds() {
+                return ttlSeconds;
+            }
+
+            @Override
+            public int mappedFileMb() {
+                return 1;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return EntityCache.class;
+            }
+        };
+    }
+
+    @Data
+    @EntityCache
+    public static class CachedItem {
+        private Long id;
+        private String name;
+    }
+
+}
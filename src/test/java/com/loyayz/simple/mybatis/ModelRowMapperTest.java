@@ -0,0 +1,130 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.helper.ModelHelper;
+import com.loyayz.simple.helper.ModelInfo;
+import lombok.Data;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ModelRowMapper 与 MyBatis 自动映射的结果一致
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class ModelRowMapperTest {
+    private static H2Database database;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2Database("CREATE TABLE mapped_row (id BIGINT PRIMARY KEY, user_name VARCHAR(20), age INT, " +
+                        "rank INT, level SMALLINT, flag TINYINT, enabled BOOLEAN, ratio DOUBLE, weight REAL, amount DECIMAL(10, 2), " +
+                        "created TIMESTAMP, updated TIMESTAMP, content VARBINARY(16), happened TIMESTAMP, birthday DATE, " +
+                        "state VARCHAR(10))",
+                "INSERT INTO mapped_row VALUES (1, 'a', 18, 3, 4, 5, TRUE, 1.5, 2.5, 12.34, '2021-01-02 03:04:05.678', " +
+                        "'2021-01-02 03:04:05.678', X'0102', '2021-01-02 03:04:05.678', '2021-01-02', 'ACTIVE')",
+                "INSERT INTO mapped_row VALUES (2, '', 0, 0, 0, 0, FALSE, 0, 0, 0, NULL, NULL, X'', NULL, NULL, 'INACTIVE')",
+                "INSERT INTO mapped_row (id) VALUES (3)");
+    }
+
+    @Test
+    void sameAsAutoMapping() {
+        MybatisBaseMapper<MappedRow> mapper = database.mapper(MappedRow.class);
+        List<MappedRow> rows = mapper.listByIds(Arrays.asList(1L, 2L, 3L));
+        rows.sort(Comparator.comparing(MappedRow::getId));
+        assertEquals(3, rows.size());
+        assertEquals(autoMapped(database, MappedRow.class, "mapped_row"), rows);
+
+        MappedRow first = rows.get(0);
+        assertEquals("a", first.getUserName());
+        assertEquals(Byte.valueOf((byte) 5), first.getFlag());
+        assertEquals(new BigDecimal("12.34"), first.getAmount());
+        assertEquals(LocalDate.of(2021, 1, 2), first.getBirthday());
+        assertEquals(State.ACTIVE, first.getState());
+        assertArrayEquals(new byte[]{1, 2}, first.getContent());
+        assertEquals(Date.class, first.getCreated().getClass());
+        // 数据库值为 NULL 的基本类型字段保留默认值，包装类型为 null
+        MappedRow empty = rows.get(2);
+        assertEquals(0, empty.getRank());
+        assertNull(empty.getAge());
+        assertNull(empty.getEnabled());
+        assertNotNull(mapper.findById(1L).orElse(null));
+        assertEquals(MappedRow[].class, database.configuration.getMappedStatement(MappedRow.class.getName() + ".listByIds.SELECT")
+                .getResultMaps().get(0).getType());
+    }
+
+    @Test
+    void callSettersOnNulls() {
+        H2Database nullable = new H2Database("CREATE TABLE defaulted_row (id BIGINT PRIMARY KEY, name VARCHAR(20), score INT)",
+                "INSERT INTO defaulted_row (id) VALUES (1)");
+        nullable.configuration.setCallSettersOnNulls(true);
+        DefaultedRow row = nullable.mapper(DefaultedRow.class).findById(1L).orElse(null);
+        assertNotNull(row);
+        assertEquals(autoMapped(nullable, DefaultedRow.class, "defaulted_row"), Collections.singletonList(row));
+        assertNull(row.getName());
+        assertEquals(-1, row.getScore());
+    }
+
+    /**
+     * 同一条 SQL 通过 MyBatis 自动映射（resultType 为模型类）
+     */
+    private static <T> List<T> autoMapped(H2Database database, Class<T> modelClass, String table) {
+        ModelInfo modelInfo = ModelHelper.modelInfo(modelClass);
+        String sql = MybatisScripts.listAll(Dialect.OTHER, table, modelInfo.fields(), modelInfo.idField(), 0);
+        String id = "autoMapped." + modelClass.getSimpleName();
+        ResultMap resultMap = new ResultMap.Builder(database.configuration, id + "-result", modelClass,
+                Collections.emptyList()).build();
+        database.configuration.addMappedStatement(new MappedStatement.Builder(database.configuration, id,
+                new XMLLanguageDriver().createSqlSource(database.configuration, sql, Object.class), SqlCommandType.SELECT)
+                .resultMaps(Collections.singletonList(resultMap))
+                .build());
+        return database.session.selectList(id);
+    }
+
+    public enum State {
+        ACTIVE, INACTIVE
+    }
+
+    @Data
+    public static class MappedRow {
+        private Long id;
+        private String userName;
+        private Integer age;
+        private int rank;
+        private Short level;
+        private Byte flag;
+        private Boolean enabled;
+        private Double ratio;
+        private Float weight;
+        private BigDecimal amount;
+        private Date created;
+        private Timestamp updated;
+        private byte[] content;
+        private LocalDateTime happened;
+        private LocalDate birthday;
+        private State state;
+    }
+
+    @Data
+    public static class DefaultedRow {
+        private Long id;
+        private String name = "none";
+        private int score = -1;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.annotation.DirtyTracking;
+import com.loyayz.simple.helper.ModelHelper;
+import com.loyayz.simple.helper.ModelSnapshots;
+import lombok.Data;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 脏字段跟踪：原地修改的数组、Date 能识别，超过 63 个字段时不跟踪
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class ModelSnapshotsTest {
+    private static H2Database database;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2Database(
+                "CREATE TABLE tracked_row (id BIGINT PRIMARY KEY, name VARCHAR(20), content VARBINARY(16), created TIMESTAMP)",
+                "CREATE TABLE wide_row (id BIGINT PRIMARY KEY, " + columns(63) + ")",
+                "CREATE TABLE wider_row (id BIGINT PRIMARY KEY, " + columns(64) + ")",
+                "INSERT INTO tracked_row VALUES (1, 'a', X'0102', '2021-01-02 03:04:05')",
+                "INSERT INTO wide_row (id) VALUES (1)",
+                "INSERT INTO wider_row (id) VALUES (1)");
+    }
+
+    @Test
+    void editInPlace() {
+        MybatisBaseMapper<TrackedRow> mapper = database.mapper(TrackedRow.class);
+        ModelSnapshots snapshots = ModelHelper.modelInfo(TrackedRow.class).snapshots();
+        TrackedRow row = mapper.findById(1L).orElse(null);
+        assertNotNull(row);
+        assertEquals(0L, snapshots.changedMask(row));
+
+        row.getContent()[0] = 9;
+        assertEquals(mask(snapshots, "content"), snapshots.changedMask(row));
+        // 其他进程修改的字段不被覆盖
+        database.execute("UPDATE tracked_row SET name = 'b' WHERE id = 1");
+        assertTrue(mapper.updateChangedById(row));
+        assertEquals(0L, snapshots.changedMask(row));
+        TrackedRow saved = database.mapper(TrackedRow.class).findById(1L).orElse(null);
+        assertNotNull(saved);
+        assertEquals("b", saved.getName());
+        assertArrayEquals(new byte[]{9, 2}, saved.getContent());
+
+        row.getCreated().setTime(row.getCreated().getTime() + 1000);
+        assertEquals(mask(snapshots, "created"), snapshots.changedMask(row));
+        assertTrue(mapper.updateChangedById(row));
+        saved = database.mapper(TrackedRow.class).findById(1L).orElse(null);
+        assertNotNull(saved);
+        assertEquals(Timestamp.valueOf("2021-01-02 03:04:06").getTime(), saved.getCreated().getTime());
+    }
+
+    @Test
+    void fieldCap() {
+        database.mapper(WideRow.class);
+        assertEquals(63, ModelHelper.modelInfo(WideRow.class).snapshots().fields().size());
+        MybatisBaseMapper<WiderRow> mapper = database.mapper(WiderRow.class);
+        assertNull(ModelHelper.modelInfo(WiderRow.class).snapshots());
+
+        // 不跟踪时修改全部字段
+        WiderRow row = mapper.findById(1L).orElse(null);
+        assertNotNull(row);
+        row.setF64(64);
+        assertTrue(mapper.updateChangedById(row));
+        WiderRow saved = mapper.findById(1L).orElse(null);
+        assertNotNull(saved);
+        assertEquals(Integer.valueOf(64), saved.getF64());
+    }
+
+    private static long mask(ModelSnapshots snapshots, String fieldName) {
+        for (int i = 0; i < snapshots.fields().size(); i++) {
+            if (snapshots.fields().get(i).property().equals(fieldName)) {
+                return 1L << i;
+            }
+        }
+        throw new IllegalArgumentException(fieldName);
+    }
+
+    private static String columns(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> "f" + i + " INT").collect(Collectors.joining(", "));
+    }
+
+    @Data
+    @DirtyTracking
+    public static class TrackedRow {
+        private Long id;
+        private String name;
+        private byte[] content;
+        private Date created;
+    }
+
+    @Data
+    @DirtyTracking
+    public static class WideRow {
+        private Long id;
+        private Integer f1, f2, f3, f4, f5, f6, f7, f8, f9, f10, f11, f12, f13, f14, f15, f16, f17, f18, f19, f20, f21, f22, f23,
+                f24, f25, f26, f27, f28, f29, f30, f31, f32, f33, f34, f35, f36, f37, f38, f39, f40, f41, f42, f43, f44,
+                f45, f46, f47, f48, f49, f50, f51, f52, f53, f54, f55, f56, f57, f58, f59, f60, f61, f62, f63;
+    }
+
+    @Data
+    @DirtyTracking
+    public static class WiderRow {
+        private Long id;
+        private Integer f1, f2, f3, f4, f5, f6, f7, f8, f9, f10, f11, f12, f13, f14, f15, f16, f17, f18, f19, f20, f21, f22, f23,
+                f24, f25, f26, f27, f28, f29, f30, f31, f32, f33, f34, f35, f36, f37, f38, f39, f40, f41, f42, f43, f44,
+                f45, f46, f47, f48, f49, f50, f51, f52, f53, f54, f55, f56, f57, f58, f59, f60, f61, f62, f63, f64;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.annotation.Replicated;
+import com.loyayz.simple.helper.ModelHelper;
+import com.loyayz.simple.helper.ModelInfo;
+import lombok.Data;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行数超过 maxRows 时不读取全表
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class ReplicatedTableTest {
+    private static H2Database database;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2Database(
+                "CREATE TABLE limited_row (id BIGINT PRIMARY KEY, name VARCHAR(20))",
+                "CREATE TABLE counted_row (id BIGINT PRIMARY KEY, name VARCHAR(20))");
+        for (int i = 1; i <= 5; i++) {
+            database.execute(String.format("INSERT INTO limited_row VALUES (%d, 'n%d')", i, i),
+                    String.format("INSERT INTO counted_row VALUES (%d, 'n%d')", i, i));
+        }
+    }
+
+    @Test
+    void listAllSql() {
+        database.mapper(LimitedRow.class);
+        ModelInfo modelInfo = ModelHelper.modelInfo(LimitedRow.class);
+        assertEquals("SELECT id,name FROM limited_row ORDER BY id LIMIT 3",
+                MybatisScripts.listAll(Dialect.MYSQL, "limited_row", modelInfo.fields(), modelInfo.idField(), 3));
+        assertEquals("SELECT TOP 3 id,name FROM limited_row ORDER BY id",
+                MybatisScripts.listAll(Dialect.SQLSERVER, "limited_row", modelInfo.fields(), modelInfo.idField(), 3));
+        assertEquals("SELECT id,name FROM limited_row ORDER BY id",
+                MybatisScripts.listAll(Dialect.OTHER, "limited_row", modelInfo.fields(), modelInfo.idField(), 3));
+    }
+
+    @Test
+    void loadAtMostMaxRowsPlusOne() {
+        MybatisBaseMapper<LimitedRow> mapper = database.mapper(LimitedRow.class);
+        mapper.replica().refresh();
+        assertFalse(mapper.replica().ready());
+        assertEquals(5, mapper.listByCondition(null).size());
+        String sql = database.configuration.getMappedStatement(statementId(LimitedRow.class, "listAll"))
+                .getBoundSql(null).getSql();
+        assertTrue(sql.endsWith("LIMIT 3"), sql);
+    }
+
+    @Test
+    void countFirstOnUnknownDialect() {
+        MybatisBaseMapper<CountedRow> mapper = database.mapper(CountedRow.class);
+        Field dialect = ReflectionUtils.findField(MybatisBaseMapper.class, "dialect");
+        ReflectionUtils.makeAccessible(dialect);
+        ReflectionUtils.setField(dialect, mapper, Dialect.OTHER);
+
+        mapper.replica().refresh();
+        assertFalse(mapper.replica().ready());
+        assertFalse(database.configuration.hasStatement(statementId(CountedRow.class, "listAll"), false));
+
+        database.execute("DELETE FROM counted_row WHERE id > 2");
+        mapper.replica().refresh();
+        assertTrue(mapper.replica().ready());
+        assertEquals(2, mapper.replica().size());
+    }
+
+    private static String statementId(Class<?> modelClass, String methodName) {
+        return String.format("%s.%s.%s", modelClass.getName(), methodName, SqlCommandType.SELECT);
+    }
+
+    @Data
+    @Replicated(refreshSeconds = 0, maxRows = 2)
+    public static class LimitedRow {
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    @Replicated(refreshSeconds = 0, maxRows = 2)
+    public static class CountedRow {
+        private Long id;
+        private String name;
+    }
+
+}
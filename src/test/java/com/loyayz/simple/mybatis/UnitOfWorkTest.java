@@ -0,0 +1,116 @@
+package com.loyayz.simple.mybatis;
+
+import lombok.Data;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 工作单元按调用顺序执行，影响行数不符时抛出异常
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class UnitOfWorkTest {
+    private static H2Database database;
+    private MybatisBaseMapper<UowParent> parents;
+    private MybatisBaseMapper<UowChild> children;
+
+    @BeforeAll
+    static void setUpDatabase() {
+        database = new H2Database(
+                "CREATE TABLE uow_parent (id BIGINT PRIMARY KEY, name VARCHAR(20))",
+                "CREATE TABLE uow_child (id BIGINT PRIMARY KEY, parent_id BIGINT NOT NULL REFERENCES uow_parent (id))");
+    }
+
+    @BeforeEach
+    void setUp() {
+        database.execute("DELETE FROM uow_child", "DELETE FROM uow_parent",
+                "INSERT INTO uow_parent VALUES (1, 'p1'), (2, 'p2')",
+                "INSERT INTO uow_child VALUES (21, 2)");
+        this.parents = database.mapper(UowParent.class);
+        this.children = database.mapper(UowChild.class);
+        TransactionSynchronizationManager.initSynchronization();
+        UnitOfWork.begin();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(UnitOfWork.class);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void keepCallOrderAcrossModels() {
+        assertTrue(this.parents.deleteById(1L));
+        assertTrue(this.children.deleteById(21L));
+        // 子表的记录删除后才能删除
+        assertTrue(this.parents.deleteById(2L));
+        assertTrue(this.parents.insert(parent(3L)));
+        assertTrue(this.children.insert(child(31L, 3L)));
+        assertTrue(this.parents.insert(parent(4L)));
+        assertEquals(6, UnitOfWork.current().size());
+
+        UnitOfWork.flushCurrent();
+        assertEquals(0, UnitOfWork.current().size());
+        assertEquals(2, this.parents.countByCondition(null));
+        assertEquals(1, this.children.countByCondition(null));
+    }
+
+    @Test
+    void mergeConsecutiveOperations() {
+        this.parents.insert(parent(3L));
+        this.parents.insert(parent(4L));
+        this.parents.deleteById(3L);
+        this.parents.deleteById(3L);
+        UnitOfWork.flushCurrent();
+        assertFalse(this.parents.existsById(3L));
+        assertTrue(this.parents.existsById(4L));
+    }
+
+    @Test
+    void failWhenUpdatedRowMissing() {
+        UowParent missing = parent(9L);
+        missing.setName("changed");
+        assertTrue(this.parents.updateById(missing));
+        IllegalStateException e = assertThrows(IllegalStateException.class, UnitOfWork::flushCurrent);
+        assertTrue(e.getMessage().contains("UPDATE_BY_ID"), e.getMessage());
+    }
+
+    @Test
+    void failWhenDeletedRowMissing() {
+        assertTrue(this.parents.deleteById(1L));
+        assertTrue(this.parents.deleteById(9L));
+        assertThrows(IllegalStateException.class, UnitOfWork::flushCurrent);
+    }
+
+    private static UowParent parent(Long id) {
+        UowParent parent = new UowParent();
+        parent.setId(id);
+        parent.setName("p" + id);
+        return parent;
+    }
+
+    private static UowChild child(Long id, Long parentId) {
+        UowChild child = new UowChild();
+        child.setId(id);
+        child.setParentId(parentId);
+        return child;
+    }
+
+    @Data
+    public static class UowParent {
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    public static class UowChild {
+        private Long id;
+        private Long parentId;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.loyayz.simple.mybatis;
+
+import com.loyayz.simple.annotation.IdStrategy;
+import com.loyayz.simple.annotation.IdStrategyType;
+import com.loyayz.simple.helper.ModelHelper;
+import lombok.Data;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UUID_V7 主键的新增与查询
+ *
+ * @author loyayz (loyayz@foxmail.com)
+ */
+class UuidV7IdTest {
+    private static H2Database database;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2Database(
+                "CREATE TABLE text_uuid_row (id CHAR(32) PRIMARY KEY, name VARCHAR(20))",
+                "CREATE TABLE binary_uuid_row (id BINARY(16) PRIMARY KEY, name VARCHAR(20))");
+    }
+
+    @Test
+    void stringId() {
+        MybatisBaseMapper<TextUuidRow> mapper = database.mapper(TextUuidRow.class);
+        TextUuidRow first = new TextUuidRow();
+        first.setName("a");
+        TextUuidRow second = new TextUuidRow();
+        second.setName("b");
+        assertTrue(mapper.insert(first));
+        assertTrue(mapper.insert(second));
+
+        assertEquals(32, first.getId().length());
+        assertEquals('7', first.getId().charAt(12));
+        assertTrue(first.getId().compareTo(second.getId()) < 0);
+        TextUuidRow saved = mapper.findById(first.getId()).orElse(null);
+        assertEquals(first, saved);
+        assertEquals(7, UUID.fromString(first.getId().replaceFirst(
+                "(\\w{8})(\\w{4})(\\w{4})(\\w{4})(\\w{12})", "$1-$2-$3-$4-$5")).version());
+    }
+
+    @Test
+    void binaryId() {
+        MybatisBaseMapper<BinaryUuidRow> mapper = database.mapper(BinaryUuidRow.class);
+        BinaryUuidRow first = new BinaryUuidRow();
+        first.setName("a");
+        BinaryUuidRow second = new BinaryUuidRow();
+        second.setName("b");
+        mapper.batchInsert(Arrays.asList(first, second));
+
+        assertEquals(16, first.getId().length);
+        assertEquals(0x70, first.getId()[6] & 0xF0);
+        List<BinaryUuidRow> saved = mapper.listByCondition(null);
+        assertEquals(2, saved.size());
+        assertTrue(saved.contains(first));
+        assertTrue(saved.contains(second));
+        assertEquals(second, mapper.findById(second.getId()).orElse(null));
+    }
+
+    @Test
+    void unsupportedIdType() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ModelHelper.init(JavaUuidRow.class));
+        assertTrue(e.getMessage().contains("UUID_V7"), e.getMessage());
+    }
+
+    @Data
+    public static class TextUuidRow {
+        @IdStrategy(type = IdStrategyType.UUID_V7)
+        private String id;
+        private String name;
+    }
+
+    @Data
+    public static class BinaryUuidRow {
+        @IdStrategy(type = IdStrategyType.UUID_V7)
+        private byte[] id;
+        private String name;
+    }
+
+    @Data
+    public static class JavaUuidRow {
+        @IdStrategy(type = IdStrategyType.UUID_V7)
+        private UUID id;
+        private String name;
+    }
+
+}